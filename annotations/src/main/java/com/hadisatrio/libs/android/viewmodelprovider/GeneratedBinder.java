@@ -0,0 +1,32 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Generates an {@code XxxBinder} for the annotated activity or fragment, whose {@code bind()} assigns
+ * each of the given {@code @GeneratedProvider} classes to the screen's field of that type. They are
+ * obtained through a single {@code ViewModelProvider} and factory, instead of one of each per class.
+ */
+@Retention(RetentionPolicy.CLASS)
+public @interface GeneratedBinder {
+
+    /** The {@code ViewModel}s to bind, in the order they are obtained. */
+    Class<?>[] value();
+}
@@ -21,4 +21,73 @@ import java.lang.annotation.RetentionPolicy;
 
 @Retention(RetentionPolicy.CLASS)
 public @interface GeneratedProvider {
+
+    /**
+     * Also generate {@code get()} overloads taking a {@code Supplier} for each constructor
+     * argument. Suppliers are only evaluated when the {@code ViewModel} isn't in the store yet.
+     */
+    boolean suppliers() default false;
+
+    /**
+     * Also generate {@code getAsync()} methods, which construct the {@code ViewModel} on the given
+     * executor and store it from the main thread. Concurrent requests share a single construction.
+     */
+    boolean async() default false;
+
+    /**
+     * Also generate {@code lazy()} methods, which return a handle only obtaining the
+     * {@code ViewModel} the first time it is asked for. Arguments are taken up front.
+     */
+    boolean lazy() default false;
+
+    /**
+     * Also generate {@code get()} overloads taking a key, for keeping several instances of the
+     * {@code ViewModel} in the same activity or fragment.
+     */
+    boolean keyed() default false;
+
+    /**
+     * Also generate {@code getShared()} and {@code getFromParent()}, which obtain the
+     * {@code ViewModel} from the store of a fragment's activity and parent fragment respectively.
+     */
+    boolean shared() default false;
+
+    /**
+     * How many cleared instances to keep for reuse, none by default. Pooled classes implement
+     * {@code Resettable} and hand themselves back through {@code XxxProvider.POOL} once cleared.
+     * Their constructor takes no arguments, which a reused instance couldn't be given anew.
+     */
+    int pool() default 0;
+
+    /**
+     * Generate methods taking a {@code FragmentActivity}. Turn off if the {@code ViewModel} is
+     * only ever obtained from fragments, to save on generated methods.
+     */
+    boolean activity() default true;
+
+    /**
+     * Generate methods taking a {@code Fragment}. Turn off if the {@code ViewModel} is only ever
+     * obtained from activities, to save on generated methods.
+     */
+    boolean fragment() default true;
+
+    /**
+     * Whose store the {@code get()} methods taking a {@code Fragment} resolve against. Use
+     * {@link Scope#ACTIVITY} for {@code ViewModel}s meant to be shared by the fragments of a screen.
+     * {@code getShared()} and {@code getFromParent()} still resolve against their own stores.
+     */
+    Scope scope() default Scope.FRAGMENT;
+
+    /** A store a fragment can obtain its {@code ViewModel}s from. */
+    enum Scope {
+
+        /** The fragment's own store. */
+        FRAGMENT,
+
+        /** The store of the activity hosting the fragment. */
+        ACTIVITY,
+
+        /** The store of the fragment the fragment is nested in. */
+        PARENT_FRAGMENT
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+import android.arch.lifecycle.ViewModelProvider;
+import android.support.v4.app.Fragment;
+
+import java.util.Arrays;
+
+/**
+ * The {@code ViewModel}s under benchmark, one per constructor arity.
+ */
+enum Arity {
+
+    ONE(Arity1ViewModel.class, 1) {
+        @Override
+        void initialize(ViewModel viewModel, String[] a) {
+            ((Arity1ViewModel) viewModel).initialize(a[0]);
+        }
+
+        @Override
+        ViewModel generatedGet(Fragment owner, String[] a) {
+            return Arity1ViewModelProvider.get(owner, a[0]);
+        }
+
+        @Override
+        ViewModelProvider.Factory handWrittenFactory(final String[] a) {
+            return new ViewModelProvider.Factory() {
+                @Override
+                public <T extends ViewModel> T create(Class<T> modelClass) {
+                    return modelClass.cast(new Arity1ViewModel(a[0]));
+                }
+            };
+        }
+    },
+    FIVE(Arity5ViewModel.class, 5) {
+        @Override
+        void initialize(ViewModel viewModel, String[] a) {
+            ((Arity5ViewModel) viewModel).initialize(a[0], a[1], a[2], a[3], a[4]);
+        }
+
+        @Override
+        ViewModel generatedGet(Fragment owner, String[] a) {
+            return Arity5ViewModelProvider.get(owner, a[0], a[1], a[2], a[3], a[4]);
+        }
+
+        @Override
+        ViewModelProvider.Factory handWrittenFactory(final String[] a) {
+            return new ViewModelProvider.Factory() {
+                @Override
+                public <T extends ViewModel> T create(Class<T> modelClass) {
+                    return modelClass.cast(new Arity5ViewModel(a[0], a[1], a[2], a[3], a[4]));
+                }
+            };
+        }
+    },
+    TWENTY(Arity20ViewModel.class, 20) {
+        @Override
+        void initialize(ViewModel viewModel, String[] a) {
+            ((Arity20ViewModel) viewModel).initialize(a[0], a[1], a[2], a[3], a[4],
+                    a[5], a[6], a[7], a[8], a[9],
+                    a[10], a[11], a[12], a[13], a[14],
+                    a[15], a[16], a[17], a[18], a[19]);
+        }
+
+        @Override
+        ViewModel generatedGet(Fragment owner, String[] a) {
+            return Arity20ViewModelProvider.get(owner, a[0], a[1], a[2], a[3], a[4],
+                    a[5], a[6], a[7], a[8], a[9],
+                    a[10], a[11], a[12], a[13], a[14],
+                    a[15], a[16], a[17], a[18], a[19]);
+        }
+
+        @Override
+        ViewModelProvider.Factory handWrittenFactory(final String[] a) {
+            return new ViewModelProvider.Factory() {
+                @Override
+                public <T extends ViewModel> T create(Class<T> modelClass) {
+                    return modelClass.cast(new Arity20ViewModel(a[0], a[1], a[2], a[3], a[4],
+                            a[5], a[6], a[7], a[8], a[9],
+                            a[10], a[11], a[12], a[13], a[14],
+                            a[15], a[16], a[17], a[18], a[19]));
+                }
+            };
+        }
+    };
+
+    private final Class<? extends ViewModel> modelClass;
+    private final int parameterCount;
+
+    Arity(Class<? extends ViewModel> modelClass, int parameterCount) {
+        this.modelClass = modelClass;
+        this.parameterCount = parameterCount;
+    }
+
+    static Arity of(int parameterCount) {
+        for (Arity arity : values()) {
+            if (arity.parameterCount == parameterCount) return arity;
+        }
+        throw new IllegalArgumentException("No ViewModel taking " + parameterCount + " arguments.");
+    }
+
+    Class<? extends ViewModel> modelClass() {
+        return modelClass;
+    }
+
+    Class<?>[] parameterTypes() {
+        final Class<?>[] parameterTypes = new Class<?>[parameterCount];
+        Arrays.fill(parameterTypes, String.class);
+        return parameterTypes;
+    }
+
+    String[] arguments() {
+        final String[] arguments = new String[parameterCount];
+        for (int i = 0; i < parameterCount; i++) {
+            arguments[i] = "argument #" + i;
+        }
+        return arguments;
+    }
+
+    /**
+     * Hands the arguments over after construction, the way no-arg {@code ViewModel}s are set up.
+     */
+    abstract void initialize(ViewModel viewModel, String[] arguments);
+
+    /**
+     * Obtains the {@code ViewModel} through its generated provider.
+     */
+    abstract ViewModel generatedGet(Fragment owner, String[] arguments);
+
+    /**
+     * A factory written by hand for the {@code ViewModel}, the way it's done without generated code.
+     */
+    abstract ViewModelProvider.Factory handWrittenFactory(String[] arguments);
+}
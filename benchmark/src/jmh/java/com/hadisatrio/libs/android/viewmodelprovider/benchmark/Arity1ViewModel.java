@@ -0,0 +1,41 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
+import com.hadisatrio.libs.android.viewmodelprovider.Main;
+
+@GeneratedProvider
+public final class Arity1ViewModel extends ViewModel {
+
+    private String arg0;
+
+    public Arity1ViewModel() {
+    }
+
+    @Main
+    public Arity1ViewModel(String arg0) {
+        initialize(arg0);
+    }
+
+    void initialize(String arg0) {
+        this.arg0 = arg0;
+    }
+}
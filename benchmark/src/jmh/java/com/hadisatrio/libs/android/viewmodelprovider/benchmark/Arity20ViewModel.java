@@ -0,0 +1,88 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
+import com.hadisatrio.libs.android.viewmodelprovider.Main;
+
+@GeneratedProvider
+public final class Arity20ViewModel extends ViewModel {
+
+    private String arg0;
+    private String arg1;
+    private String arg2;
+    private String arg3;
+    private String arg4;
+    private String arg5;
+    private String arg6;
+    private String arg7;
+    private String arg8;
+    private String arg9;
+    private String arg10;
+    private String arg11;
+    private String arg12;
+    private String arg13;
+    private String arg14;
+    private String arg15;
+    private String arg16;
+    private String arg17;
+    private String arg18;
+    private String arg19;
+
+    public Arity20ViewModel() {
+    }
+
+    @Main
+    public Arity20ViewModel(String arg0, String arg1, String arg2, String arg3, String arg4,
+                            String arg5, String arg6, String arg7, String arg8, String arg9,
+                            String arg10, String arg11, String arg12, String arg13, String arg14,
+                            String arg15, String arg16, String arg17, String arg18, String arg19) {
+        initialize(arg0, arg1, arg2, arg3, arg4,
+                   arg5, arg6, arg7, arg8, arg9,
+                   arg10, arg11, arg12, arg13, arg14,
+                   arg15, arg16, arg17, arg18, arg19);
+    }
+
+    void initialize(String arg0, String arg1, String arg2, String arg3, String arg4,
+                    String arg5, String arg6, String arg7, String arg8, String arg9,
+                    String arg10, String arg11, String arg12, String arg13, String arg14,
+                    String arg15, String arg16, String arg17, String arg18, String arg19) {
+        this.arg0 = arg0;
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+        this.arg3 = arg3;
+        this.arg4 = arg4;
+        this.arg5 = arg5;
+        this.arg6 = arg6;
+        this.arg7 = arg7;
+        this.arg8 = arg8;
+        this.arg9 = arg9;
+        this.arg10 = arg10;
+        this.arg11 = arg11;
+        this.arg12 = arg12;
+        this.arg13 = arg13;
+        this.arg14 = arg14;
+        this.arg15 = arg15;
+        this.arg16 = arg16;
+        this.arg17 = arg17;
+        this.arg18 = arg18;
+        this.arg19 = arg19;
+    }
+}
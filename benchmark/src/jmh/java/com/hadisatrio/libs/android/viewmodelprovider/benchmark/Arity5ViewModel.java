@@ -0,0 +1,49 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
+import com.hadisatrio.libs.android.viewmodelprovider.Main;
+
+@GeneratedProvider
+public final class Arity5ViewModel extends ViewModel {
+
+    private String arg0;
+    private String arg1;
+    private String arg2;
+    private String arg3;
+    private String arg4;
+
+    public Arity5ViewModel() {
+    }
+
+    @Main
+    public Arity5ViewModel(String arg0, String arg1, String arg2, String arg3, String arg4) {
+        initialize(arg0, arg1, arg2, arg3, arg4);
+    }
+
+    void initialize(String arg0, String arg1, String arg2, String arg3, String arg4) {
+        this.arg0 = arg0;
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+        this.arg3 = arg3;
+        this.arg4 = arg4;
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+import android.arch.lifecycle.ViewModelProvider;
+import android.arch.lifecycle.ViewModelStore;
+import android.support.annotation.NonNull;
+
+import com.hadisatrio.libs.android.viewmodelprovider.AsyncConstruction;
+import com.hadisatrio.libs.android.viewmodelprovider.Callback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Destroys the owner while an asynchronous construction is under way, then lets the construction
+ * finish. The instance must be cleared rather than stored, nobody may be called back, and a later
+ * request must start over instead of waiting on the abandoned construction. An instance losing out
+ * to one the store got in the meantime must be cleared as well, and a construction failing with
+ * an {@link Error} must reach the callbacks and make way for the next request. A synchronous
+ * {@code get()} in between must take the construction over rather than construct another instance.
+ * Exits with a non-zero status otherwise.
+ *
+ * <p>The generated constructions post to a {@code Handler}, which the Android stubs on the JVM
+ * can't create. {@link TeardownConstruction} stands in for them, telling a cleared store the same
+ * way: by the sentinel it keeps in the store.
+ */
+public final class AsyncTeardownHarness {
+
+    private static final String KEY = "AsyncTeardownHarness:Tracked";
+
+    private AsyncTeardownHarness() {
+    }
+
+    public static void main(String[] args) {
+        final List<String> failures = run();
+        if (!failures.isEmpty()) {
+            for (String failure : failures) {
+                System.err.println(failure);
+            }
+            System.exit(1);
+        }
+        System.out.println("Constructions outliving their store were discarded, the others were stored.");
+    }
+
+    /** Runs every scenario, returning what failed. */
+    static List<String> run() {
+        final List<String> failures = new ArrayList<>();
+        destroyDuringConstruction(failures);
+        surviveConstruction(failures);
+        loseToStoredInstance(failures);
+        failWithError(failures);
+        takeOverScheduled(failures);
+        takeOverConstructed(failures);
+        takeOverConstructing(failures);
+        return failures;
+    }
+
+    private static void destroyDuringConstruction(List<String> failures) {
+        final ViewModelStore store = new ViewModelStore();
+        final Queue background = new Queue();
+        final Queue mainThread = new Queue();
+        final RecordingCallback callback = new RecordingCallback();
+        final TeardownConstruction construction = new TeardownConstruction(store, mainThread);
+
+        AsyncConstruction.enqueue(construction, background, callback);
+        background.drain();
+        store.clear();
+        mainThread.drain();
+
+        final Tracked instance = construction.constructed;
+        if (instance == null) {
+            failures.add("Nothing was constructed.");
+            return;
+        }
+        if (instance.clears != 1) {
+            failures.add("The instance outliving its store was cleared " + instance.clears + " times, not once.");
+        }
+        if (!callback.results.isEmpty() || !callback.errors.isEmpty()) {
+            failures.add("The callback of a destroyed owner was called.");
+        }
+
+        // The abandoned construction must not be pending anymore.
+        AsyncConstruction.enqueue(new TeardownConstruction(store, mainThread), background, new RecordingCallback());
+        if (background.tasks.size() != 1) {
+            failures.add("A request after the store got cleared didn't start a construction of its own.");
+        }
+    }
+
+    private static void surviveConstruction(List<String> failures) {
+        final ViewModelStore store = new ViewModelStore();
+        final Queue background = new Queue();
+        final Queue mainThread = new Queue();
+        final RecordingCallback callback = new RecordingCallback();
+        final TeardownConstruction construction = new TeardownConstruction(store, mainThread);
+
+        AsyncConstruction.enqueue(construction, background, callback);
+        background.drain();
+        mainThread.drain();
+
+        final Tracked instance = construction.constructed;
+        if (callback.results.size() != 1 || callback.results.get(0) != instance) {
+            failures.add("The callback didn't get the constructed instance exactly once.");
+        }
+        if (instance != null && instance.clears != 0) {
+            failures.add("An instance whose store is still around got cleared.");
+        }
+
+        store.clear();
+        if (instance != null && instance.clears != 1) {
+            failures.add("Clearing the store cleared the stored instance " + instance.clears + " times, not once.");
+        }
+    }
+
+    private static void loseToStoredInstance(List<String> failures) {
+        final ViewModelStore store = new ViewModelStore();
+        final Queue background = new Queue();
+        final Queue mainThread = new Queue();
+        final RecordingCallback callback = new RecordingCallback();
+        final TeardownConstruction construction = new TeardownConstruction(store, mainThread);
+
+        AsyncConstruction.enqueue(construction, background, callback);
+        background.drain();
+        final Tracked stored = new ViewModelProvider(store, new ViewModelProvider.Factory() {
+            @NonNull
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+                return (T) new Tracked();
+            }
+        }).get(KEY, Tracked.class);
+        mainThread.drain();
+
+        final Tracked instance = construction.constructed;
+        if (callback.results.size() != 1 || callback.results.get(0) != stored) {
+            failures.add("The callback didn't get the instance the store already had.");
+        }
+        if (instance == null || instance.clears != 1) {
+            failures.add("The instance losing out to the stored one wasn't cleared exactly once.");
+        }
+        if (stored.clears != 0) {
+            failures.add("The stored instance got cleared while its store is still around.");
+        }
+    }
+
+    private static void failWithError(List<String> failures) {
+        final ViewModelStore store = new ViewModelStore();
+        final Queue background = new Queue();
+        final Queue mainThread = new Queue();
+        final RecordingCallback callback = new RecordingCallback();
+        final TeardownConstruction construction = new TeardownConstruction(store, mainThread);
+        construction.failure = new AssertionError("Failing on purpose.");
+
+        AsyncConstruction.enqueue(construction, background, callback);
+        background.drain();
+
+        // Asked for before the error got delivered, which mustn't wait on the failed construction.
+        AsyncConstruction.enqueue(new TeardownConstruction(store, mainThread), background, new RecordingCallback());
+        if (background.tasks.size() != 1) {
+            failures.add("A request after a construction failed with an error didn't start one of its own.");
+        }
+
+        mainThread.drain();
+        if (callback.errors.size() != 1 || callback.errors.get(0) != construction.failure) {
+            failures.add("The callback didn't get the error the construction failed with.");
+        }
+    }
+
+    private static void takeOverScheduled(List<String> failures) {
+        final ViewModelStore store = new ViewModelStore();
+        final Queue background = new Queue();
+        final Queue mainThread = new Queue();
+        final RecordingCallback callback = new RecordingCallback();
+        final TeardownConstruction construction = new TeardownConstruction(store, mainThread);
+
+        AsyncConstruction.enqueue(construction, background, callback);
+        final Tracked stored = get(store);
+        background.drain();
+        mainThread.drain();
+
+        if (construction.constructed != null) {
+            failures.add("A construction taken over before it started still constructed an instance.");
+        }
+        if (callback.results.size() != 1 || callback.results.get(0) != stored) {
+            failures.add("The callback didn't get the instance the get() taking over stored.");
+        }
+    }
+
+    private static void takeOverConstructed(List<String> failures) {
+        final ViewModelStore store = new ViewModelStore();
+        final Queue background = new Queue();
+        final Queue mainThread = new Queue();
+        final RecordingCallback callback = new RecordingCallback();
+        final TeardownConstruction construction = new TeardownConstruction(store, mainThread);
+
+        AsyncConstruction.enqueue(construction, background, callback);
+        background.drain();
+        final Tracked stored = get(store);
+        mainThread.drain();
+
+        if (stored != construction.constructed) {
+            failures.add("A get() taking over a finished construction didn't store its instance.");
+        }
+        if (callback.results.size() != 1 || callback.results.get(0) != stored) {
+            failures.add("The callback didn't get the instance handed to the get() taking over.");
+        }
+        if (stored.clears != 0) {
+            failures.add("The instance handed to the get() taking over got cleared.");
+        }
+    }
+
+    private static void takeOverConstructing(List<String> failures) {
+        final ViewModelStore store = new ViewModelStore();
+        final Queue mainThread = new Queue();
+        final RecordingCallback callback = new RecordingCallback();
+        final TeardownConstruction construction = new TeardownConstruction(store, mainThread);
+        construction.started = new CountDownLatch(1);
+        construction.delayMillis = 100;
+
+        final Thread background = new Thread(construction);
+        AsyncConstruction.enqueue(construction, new Executor() {
+            @Override
+            public void execute(@NonNull Runnable task) {
+                background.start();
+            }
+        }, callback);
+        try {
+            construction.started.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        final Tracked stored = get(store);
+        try {
+            background.join();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        mainThread.drain();
+
+        if (stored != construction.constructed) {
+            failures.add("A get() during a construction didn't wait for the instance under way.");
+        }
+        if (callback.results.size() != 1 || callback.results.get(0) != stored) {
+            failures.add("The callback didn't get the instance the get() waited for.");
+        }
+    }
+
+    /** Works like the plain {@code get()} generated for a {@code ViewModel} with {@code getAsync()}. */
+    private static Tracked get(ViewModelStore store) {
+        final Object takenOver = AsyncConstruction.takeOver(store, KEY);
+        return new ViewModelProvider(store, new ViewModelProvider.Factory() {
+            @NonNull
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+                return (T) (takenOver != null ? takenOver : new Tracked());
+            }
+        }).get(KEY, Tracked.class);
+    }
+
+    /** Works like the construction generated for {@code getAsync()}, minus the {@code Handler}. */
+    private static final class TeardownConstruction extends AsyncConstruction<Tracked>
+            implements ViewModelProvider.Factory {
+
+        private final ViewModelStore store;
+        private final Executor mainThread;
+        private final Sentinel sentinel;
+        private Tracked instance;
+        Tracked constructed;
+        Error failure;
+        CountDownLatch started;
+        long delayMillis;
+
+        TeardownConstruction(ViewModelStore store, Executor mainThread) {
+            super(store, KEY);
+            this.store = store;
+            this.mainThread = mainThread;
+            this.sentinel = new ViewModelProvider(store, this).get(KEY + ":sentinel", Sentinel.class);
+        }
+
+        @Override
+        protected Tracked construct() {
+            if (failure != null) {
+                throw failure;
+            }
+            if (started != null) {
+                started.countDown();
+            }
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            constructed = new Tracked();
+            return constructed;
+        }
+
+        @Override
+        protected Tracked install(Tracked instance) {
+            this.instance = instance;
+            return new ViewModelProvider(store, this).get(KEY, Tracked.class);
+        }
+
+        @Override
+        protected boolean isScopeCleared() {
+            return sentinel.cleared;
+        }
+
+        @Override
+        protected void discard(Tracked instance) {
+            this.instance = instance;
+            final ViewModelStore graveyard = new ViewModelStore();
+            new ViewModelProvider(graveyard, this).get(KEY, Tracked.class);
+            graveyard.clear();
+        }
+
+        @Override
+        protected void postToMainThread(Runnable task) {
+            mainThread.execute(task);
+        }
+
+        @NonNull
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+            if (modelClass == Sentinel.class) {
+                return (T) new Sentinel();
+            }
+            if (instance == null) {
+                throw new IllegalStateException("Constructing Tracked failed in the get() which took over.");
+            }
+            return (T) instance;
+        }
+    }
+
+    private static final class Sentinel extends ViewModel {
+
+        boolean cleared;
+
+        @Override
+        protected void onCleared() {
+            cleared = true;
+        }
+    }
+
+    private static final class Tracked extends ViewModel {
+
+        int clears;
+
+        @Override
+        protected void onCleared() {
+            clears++;
+        }
+    }
+
+    /** Holds on to its tasks until drained, so the harness decides what happens in between. */
+    private static final class Queue implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(@NonNull Runnable task) {
+            tasks.add(task);
+        }
+
+        void drain() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    private static final class RecordingCallback implements Callback<Tracked> {
+
+        final List<Tracked> results = new ArrayList<>();
+        final List<Throwable> errors = new ArrayList<>();
+
+        @Override
+        public void onResult(Tracked result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.app.Application;
+import android.arch.lifecycle.ViewModel;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
+
+/**
+ * Shaped like the demo's {@code DopeViewModel}, counting how often it is created and cleared for
+ * {@link ConfigurationChurnHarness}.
+ */
+@GeneratedProvider
+public final class ChurnViewModel extends ViewModel {
+
+    static int constructions;
+    static int clears;
+
+    private final Application application;
+    private final Long fucksGiven;
+
+    public ChurnViewModel(Application application, Long fucksGiven) {
+        this.application = application;
+        this.fucksGiven = fucksGiven;
+        constructions++;
+    }
+
+    @Override
+    protected void onCleared() {
+        clears++;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+import android.arch.lifecycle.ViewModelStore;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Puts the generated providers of {@link ChurnViewModel}, {@link DeferredChurnViewModel} and
+ * {@link PooledChurnViewModel} through a long run of configuration changes on a real
+ * {@code ViewModelStore}: each screen's store sees its owner recreated several times, then gets
+ * cleared as the screen finishes. Exits with a non-zero status unless every store constructed each
+ * {@code ViewModel} exactly once, cleared it exactly once, every screen got its pooled one from the
+ * pool, and nothing of a finished screen stayed reachable.
+ *
+ * <p>Owners can't be attached off a device, so each recreated owner is a
+ * {@link StoreBackedFragment} handing out its screen's store to the generated {@code get()}s.
+ *
+ * <p>Arguments are {@code key=value} pairs: {@code screens}, {@code recreations} (owners per
+ * screen), {@code warmupScreens}, {@code retainedBudgetKb} (heap the run may leave behind) and
+ * {@code report} (where to write the JSON report).
+ */
+public final class ConfigurationChurnHarness {
+
+    // Only every so many screens are tracked, so the tracking itself stays small.
+    private static final int TRACKING_INTERVAL = 1000;
+
+    private ConfigurationChurnHarness() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final List<String> failures = run(parseOptions(args));
+        if (!failures.isEmpty()) {
+            for (String failure : failures) {
+                System.err.println(failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    /** Runs the churn the given options ask for, returning what failed. */
+    static List<String> run(Map<String, String> options) throws IOException {
+        final int screens = Integer.parseInt(option(options, "screens", "100000"));
+        final int recreations = Integer.parseInt(option(options, "recreations", "5"));
+        final int warmupScreens = Integer.parseInt(option(options, "warmupScreens", "10000"));
+        final long retainedBudgetKb = Long.parseLong(option(options, "retainedBudgetKb", "512"));
+        final String report = options.get("report");
+
+        final List<String> failures = new ArrayList<>();
+
+        // Let everything get JIT-compiled, and loaded, before the baseline is taken.
+        churn(warmupScreens, recreations, new ArrayList<WeakReference<Object>>(), failures);
+        ChurnViewModel.constructions = ChurnViewModel.clears = 0;
+        DeferredChurnViewModel.constructions = DeferredChurnViewModel.clears = 0;
+        PooledChurnViewModel.constructions = PooledChurnViewModel.resets = 0;
+        final long startPoolHits = PooledChurnViewModelProvider.POOL.getHits();
+        final long startPoolMisses = PooledChurnViewModelProvider.POOL.getMisses();
+
+        final long baselineHeapBytes = usedHeapAfterGc();
+        final long startGcCount = gcCount();
+        final long startAllocatedBytes = allocatedBytes();
+        final long start = System.nanoTime();
+
+        final List<WeakReference<Object>> finished = new ArrayList<>();
+        churn(screens, recreations, finished, failures);
+
+        final long wallNanos = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - startAllocatedBytes;
+        final long gcs = gcCount() - startGcCount;
+        final long retainedBytes = usedHeapAfterGc() - baselineHeapBytes;
+
+        expect(failures, ChurnViewModel.constructions == screens,
+                "ChurnViewModel constructed %d times for %d screens.", ChurnViewModel.constructions, screens);
+        expect(failures, ChurnViewModel.clears == screens,
+                "ChurnViewModel cleared %d times for %d screens.", ChurnViewModel.clears, screens);
+        expect(failures, DeferredChurnViewModel.constructions == screens,
+                "DeferredChurnViewModel constructed %d times for %d screens.", DeferredChurnViewModel.constructions, screens);
+        expect(failures, DeferredChurnViewModel.clears == screens,
+                "DeferredChurnViewModel cleared %d times for %d screens.", DeferredChurnViewModel.clears, screens);
+
+        // The warm-up left an instance in the pool, so nothing should have been constructed since.
+        final long poolHits = PooledChurnViewModelProvider.POOL.getHits() - startPoolHits;
+        final long poolMisses = PooledChurnViewModelProvider.POOL.getMisses() - startPoolMisses;
+        expect(failures, poolHits == screens && poolMisses == 0,
+                "PooledChurnViewModel's pool had %d hits and %d misses for %d screens.", poolHits, poolMisses, screens);
+        expect(failures, PooledChurnViewModel.constructions == 0,
+                "PooledChurnViewModel constructed %d times despite its pool.", PooledChurnViewModel.constructions);
+        expect(failures, PooledChurnViewModel.resets == screens,
+                "PooledChurnViewModel reset %d times for %d screens.", PooledChurnViewModel.resets, screens);
+
+        int reachable = 0;
+        for (WeakReference<Object> reference : finished) {
+            if (reference.get() != null) reachable++;
+        }
+        expect(failures, reachable == 0,
+                "%d of %d tracked ViewModels and arguments are still reachable after their screen finished.",
+                reachable, finished.size());
+        expect(failures, retainedBytes <= retainedBudgetKb * 1024,
+                "The run left %d KB behind, over its %d KB budget.", retainedBytes / 1024, retainedBudgetKb);
+
+        final long cycles = (long) screens * recreations;
+        System.out.println(String.format(Locale.US,
+                "%d screens, %d owner recreations: %.1f ms, %.1f ns and %s bytes allocated per recreation, "
+                        + "%d collections, %d KB retained (budget %d KB).",
+                screens, cycles, wallNanos / 1e6, (double) wallNanos / cycles,
+                startAllocatedBytes < 0 ? "?" : String.format(Locale.US, "%.1f", (double) allocated / cycles),
+                gcs, retainedBytes / 1024, retainedBudgetKb));
+
+        if (report != null) {
+            writeReport(new File(report), screens, cycles, wallNanos, startAllocatedBytes < 0 ? -1 : allocated,
+                    gcs, retainedBytes);
+        }
+        return failures;
+    }
+
+    private static void churn(int screens, int recreations, List<WeakReference<Object>> finished,
+                              List<String> failures) {
+        for (int screen = 0; screen < screens; screen++) {
+            final ViewModelStore store = new ViewModelStore();
+            final Long fucksGiven = (long) screen;
+            final String whatNot = "screen" + screen;
+            final List<Integer> someNumbers = Arrays.asList(screen, screen + 1);
+
+            ViewModel first = null;
+            ViewModel deferredFirst = null;
+            ViewModel pooledFirst = null;
+            for (int recreation = 0; recreation < recreations; recreation++) {
+                final StoreBackedFragment owner = new StoreBackedFragment(store);
+                final ViewModel viewModel = ChurnViewModelProvider.get(owner, null, fucksGiven);
+                final ViewModel deferred =
+                        DeferredChurnViewModelProvider.get(owner, null, fucksGiven, whatNot, someNumbers);
+                final ViewModel pooled = PooledChurnViewModelProvider.get(owner);
+
+                if (recreation == 0) {
+                    first = viewModel;
+                    deferredFirst = deferred;
+                    pooledFirst = pooled;
+                } else if (viewModel != first || deferred != deferredFirst || pooled != pooledFirst) {
+                    failures.add("Screen " + screen + " got a new instance on recreation " + recreation + ".");
+                    return;
+                }
+            }
+
+            if (screen % TRACKING_INTERVAL == 0) {
+                finished.add(new WeakReference<Object>(first));
+                finished.add(new WeakReference<Object>(deferredFirst));
+                finished.add(new WeakReference<Object>(whatNot));
+                finished.add(new WeakReference<Object>(someNumbers));
+            }
+
+            // The screen finishes for good. The pooled instance isn't tracked, the pool keeps it on purpose.
+            store.clear();
+        }
+    }
+
+    private static void expect(List<String> failures, boolean condition, String format, Object... args) {
+        if (!condition) {
+            failures.add(String.format(Locale.US, format, args));
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        // One collection may not be enough to get rid of everything unreachable.
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    // Only HotSpot tells, -1 elsewhere.
+    private static long allocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String key, String defaultValue) {
+        final String value = options.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    private static void writeReport(File file, int screens, long cycles, long wallNanos, long allocatedBytes,
+                                    long gcs, long retainedBytes) throws IOException {
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Couldn't create " + parent);
+        }
+
+        final Writer writer = new FileWriter(file);
+        try {
+            writer.write(String.format(Locale.US, "{\n"
+                            + "  \"screens\": %d,\n"
+                            + "  \"ownerRecreations\": %d,\n"
+                            + "  \"wallMillis\": %.3f,\n"
+                            + "  \"allocatedBytes\": %d,\n"
+                            + "  \"collections\": %d,\n"
+                            + "  \"retainedBytes\": %d\n"
+                            + "}\n",
+                    screens, cycles, wallNanos / 1e6, allocatedBytes, gcs, retainedBytes));
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.app.Application;
+import android.arch.lifecycle.ViewModel;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
+
+import java.util.List;
+
+/**
+ * Shaped like the demo's {@code AnotherDopeViewModel}, counting how often it is created and cleared
+ * for {@link ConfigurationChurnHarness}.
+ */
+@GeneratedProvider(suppliers = true, async = true)
+public final class DeferredChurnViewModel extends ViewModel {
+
+    static int constructions;
+    static int clears;
+
+    private final Application application;
+    private final Long fucksGiven;
+    private final String whatNot;
+    private final List<Integer> someNumbers;
+
+    public DeferredChurnViewModel(Application application, Long fucksGiven, String whatNot,
+                                  List<Integer> someNumbers) {
+        this.application = application;
+        this.fucksGiven = fucksGiven;
+        this.whatNot = whatNot;
+        this.someNumbers = someNumbers;
+        constructions++;
+    }
+
+    @Override
+    protected void onCleared() {
+        clears++;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
+import com.hadisatrio.libs.android.viewmodelprovider.Resettable;
+
+import java.util.Arrays;
+
+/**
+ * A {@code ViewModel} with a costly allocation up front, pooled so that every screen but the first
+ * goes without it in {@link ConfigurationChurnHarness}.
+ */
+@GeneratedProvider(pool = 1)
+public final class PooledChurnViewModel extends ViewModel implements Resettable {
+
+    static int constructions;
+    static int resets;
+
+    private final int[] buffer = new int[1024];
+
+    public PooledChurnViewModel() {
+        constructions++;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(buffer, 0);
+        resets++;
+    }
+
+    @Override
+    protected void onCleared() {
+        PooledChurnViewModelProvider.POOL.recycle(this);
+    }
+}
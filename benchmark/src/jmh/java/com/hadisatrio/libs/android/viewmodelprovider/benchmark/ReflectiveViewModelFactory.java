@@ -0,0 +1,53 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+import android.arch.lifecycle.ViewModelProvider;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A hand-written factory resolving the constructor reflectively on every call, as commonly
+ * done when there's no generated code to lean on.
+ */
+final class ReflectiveViewModelFactory implements ViewModelProvider.Factory {
+
+    private final Class<?>[] parameterTypes;
+    private final Object[] arguments;
+
+    ReflectiveViewModelFactory(Class<?>[] parameterTypes, Object[] arguments) {
+        this.parameterTypes = parameterTypes;
+        this.arguments = arguments;
+    }
+
+    @Override
+    public <T extends ViewModel> T create(Class<T> modelClass) {
+        try {
+            return modelClass.getConstructor(parameterTypes).newInstance(arguments);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+        } catch (InstantiationException e) {
+            throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Cannot create an instance of " + modelClass, e);
+        }
+    }
+}
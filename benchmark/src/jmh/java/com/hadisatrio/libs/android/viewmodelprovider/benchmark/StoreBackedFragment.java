@@ -0,0 +1,38 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModelStore;
+import android.support.v4.app.Fragment;
+
+/**
+ * A fragment that is never attached, handing out the given store instead. Lets the generated
+ * {@code get()}s run off a device.
+ */
+final class StoreBackedFragment extends Fragment {
+
+    private final ViewModelStore store;
+
+    StoreBackedFragment(ViewModelStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public ViewModelStore getViewModelStore() {
+        return store;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+import android.arch.lifecycle.ViewModelProvider;
+import android.arch.lifecycle.ViewModelStore;
+import android.arch.lifecycle.ViewModelStores;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cold misses: the owner's store is empty on every call, so each approach has to create the
+ * {@code ViewModel}. The store is cleared within the operation for all of them alike.
+ */
+@State(Scope.Thread)
+public class ViewModelCreationBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int parameterCount;
+
+    private Arity arity;
+    private String[] arguments;
+    private ViewModelStore store;
+    private StoreBackedFragment owner;
+
+    private ViewModelProvider.Factory registryFactory;
+    private ViewModelProvider.Factory reflectiveFactory;
+    private ViewModelProvider.Factory defaultFactory;
+
+    @Setup
+    public void setUp() {
+        arity = Arity.of(parameterCount);
+        arguments = arity.arguments();
+        store = new ViewModelStore();
+        owner = new StoreBackedFragment(store);
+
+        registryFactory = new BenchmarkViewModelFactory((Object[]) arguments);
+        reflectiveFactory = new ReflectiveViewModelFactory(arity.parameterTypes(), arguments);
+        defaultFactory = new ViewModelProvider.NewInstanceFactory();
+    }
+
+    @Benchmark
+    public ViewModel generated() {
+        final ViewModel viewModel = arity.generatedGet(owner, arguments);
+        store.clear();
+        return viewModel;
+    }
+
+    @Benchmark
+    public ViewModel registry() {
+        final ViewModel viewModel = new ViewModelProvider(ViewModelStores.of(owner), registryFactory)
+                .get(arity.modelClass());
+        store.clear();
+        return viewModel;
+    }
+
+    @Benchmark
+    public ViewModel handWritten() {
+        final ViewModel viewModel = new ViewModelProvider(ViewModelStores.of(owner),
+                arity.handWrittenFactory(arguments)).get(arity.modelClass());
+        store.clear();
+        return viewModel;
+    }
+
+    @Benchmark
+    public ViewModel reflective() {
+        final ViewModel viewModel = new ViewModelProvider(ViewModelStores.of(owner), reflectiveFactory)
+                .get(arity.modelClass());
+        store.clear();
+        return viewModel;
+    }
+
+    @Benchmark
+    public ViewModel newInstanceFactory() {
+        final ViewModel viewModel = new ViewModelProvider(ViewModelStores.of(owner), defaultFactory)
+                .get(arity.modelClass());
+        arity.initialize(viewModel, arguments);
+        store.clear();
+        return viewModel;
+    }
+}
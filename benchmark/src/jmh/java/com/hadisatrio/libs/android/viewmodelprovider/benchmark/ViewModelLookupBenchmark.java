@@ -0,0 +1,86 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModel;
+import android.arch.lifecycle.ViewModelProvider;
+import android.arch.lifecycle.ViewModelStore;
+import android.arch.lifecycle.ViewModelStores;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Warm hits: the {@code ViewModel} is already in the owner's retained store, as it is after a
+ * configuration change. Each approach still pays for whatever it allocates or sets up per call,
+ * hand-written factories included since they're typically passed in anew on every call.
+ */
+@State(Scope.Thread)
+public class ViewModelLookupBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int parameterCount;
+
+    private Arity arity;
+    private String[] arguments;
+    private Class<?>[] parameterTypes;
+    private StoreBackedFragment owner;
+
+    @Setup
+    public void setUp() {
+        arity = Arity.of(parameterCount);
+        arguments = arity.arguments();
+        parameterTypes = arity.parameterTypes();
+        owner = new StoreBackedFragment(new ViewModelStore());
+        arity.generatedGet(owner, arguments);
+    }
+
+    @Benchmark
+    public ViewModel generated() {
+        return arity.generatedGet(owner, arguments);
+    }
+
+    @Benchmark
+    public ViewModel registry() {
+        return new ViewModelProvider(ViewModelStores.of(owner), new BenchmarkViewModelFactory((Object[]) arguments))
+                .get(arity.modelClass());
+    }
+
+    @Benchmark
+    public ViewModel handWritten() {
+        return new ViewModelProvider(ViewModelStores.of(owner),
+                arity.handWrittenFactory(arguments)).get(arity.modelClass());
+    }
+
+    @Benchmark
+    public ViewModel reflective() {
+        return new ViewModelProvider(ViewModelStores.of(owner),
+                new ReflectiveViewModelFactory(parameterTypes, arguments)).get(arity.modelClass());
+    }
+
+    @Benchmark
+    public ViewModel newInstanceFactory() {
+        final ViewModel viewModel = new ViewModelProvider(ViewModelStores.of(owner),
+                new ViewModelProvider.NewInstanceFactory()).get(arity.modelClass());
+        arity.initialize(viewModel, arguments);
+        return viewModel;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import android.arch.lifecycle.ViewModelStore;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures what the generated {@code get()}s of {@link ChurnViewModel} and
+ * {@link DeferredChurnViewModel} allocate once their {@code ViewModel} is in the store, the path
+ * every configuration change after the first takes. Warm calls are factory-allocation-free: no
+ * factory and no arguments array, only the {@code ViewModelProvider} wrapping the store, which the
+ * Architecture Components offer no way around. Exits with a non-zero status when a warm
+ * {@code get()} allocates over budget or returns another instance than the first one did.
+ *
+ * <p>Arguments are {@code key=value} pairs: {@code calls}, {@code warmupCalls} and
+ * {@code budgetBytes} (per warm call, room for a {@code ViewModelProvider} but not for a factory
+ * on top by default).
+ */
+public final class WarmPathAllocationHarness {
+
+    private WarmPathAllocationHarness() {
+    }
+
+    public static void main(String[] args) {
+        final Map<String, String> options = parseOptions(args);
+        final int calls = Integer.parseInt(option(options, "calls", "1000000"));
+        final int warmupCalls = Integer.parseInt(option(options, "warmupCalls", "100000"));
+        final double budgetBytes = Double.parseDouble(option(options, "budgetBytes", "32"));
+
+        if (!isMeasurable()) {
+            System.out.println("This JVM doesn't tell what a thread allocates, nothing to measure.");
+            return;
+        }
+
+        final List<String> failures = run(calls, warmupCalls, budgetBytes);
+        if (!failures.isEmpty()) {
+            for (String failure : failures) {
+                System.err.println(failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    /** Whether this JVM tells what a thread allocates. */
+    static boolean isMeasurable() {
+        return allocatedBytes() >= 0;
+    }
+
+    /** Measures the warm calls, returning what failed. */
+    static List<String> run(int calls, int warmupCalls, double budgetBytes) {
+        final StoreBackedFragment fragment = new StoreBackedFragment(new ViewModelStore());
+        final Long fucksGiven = 42L;
+        final String whatNot = "whatNot";
+        final List<Integer> someNumbers = Arrays.asList(4, 2);
+        final ChurnViewModel churn = ChurnViewModelProvider.get(fragment, null, fucksGiven);
+        final DeferredChurnViewModel deferredChurn =
+                DeferredChurnViewModelProvider.get(fragment, null, fucksGiven, whatNot, someNumbers);
+
+        final List<String> failures = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            // The first round only gets everything JIT-compiled.
+            final boolean measured = round == 1;
+            final int roundCalls = measured ? calls : warmupCalls;
+
+            long start = allocatedBytes();
+            for (int call = 0; call < roundCalls; call++) {
+                if (ChurnViewModelProvider.get(fragment, null, fucksGiven) != churn) {
+                    failures.add("ChurnViewModelProvider.get() returned another instance on call " + call + ".");
+                    break;
+                }
+            }
+            if (measured) {
+                measure(failures, "ChurnViewModelProvider.get()", allocatedBytes() - start, calls, budgetBytes);
+            }
+
+            start = allocatedBytes();
+            for (int call = 0; call < roundCalls; call++) {
+                if (DeferredChurnViewModelProvider.get(fragment, null, fucksGiven, whatNot, someNumbers)
+                        != deferredChurn) {
+                    failures.add("DeferredChurnViewModelProvider.get() returned another instance on call "
+                            + call + ".");
+                    break;
+                }
+            }
+            if (measured) {
+                measure(failures, "DeferredChurnViewModelProvider.get()", allocatedBytes() - start, calls,
+                        budgetBytes);
+            }
+        }
+        return failures;
+    }
+
+    private static void measure(List<String> failures, String method, long allocated, int calls,
+                                double budgetBytes) {
+        final double perCall = (double) allocated / calls;
+        System.out.println(String.format(Locale.US, "%s: %.1f bytes allocated per warm call (budget %.1f).",
+                method, perCall, budgetBytes));
+        if (perCall > budgetBytes) {
+            failures.add(String.format(Locale.US, "%s allocated %.1f bytes per warm call, over its %.1f budget.",
+                    method, perCall, budgetBytes));
+        }
+    }
+
+    // Only HotSpot tells, -1 elsewhere.
+    private static long allocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String key, String defaultValue) {
+        final String value = options.get(key);
+        return value != null ? value : defaultValue;
+    }
+}
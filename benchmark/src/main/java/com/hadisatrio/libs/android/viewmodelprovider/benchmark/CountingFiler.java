@@ -0,0 +1,93 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import java.io.IOException;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+
+/**
+ * Counts the files a processor asks to create, and times how long the actual {@link Filer} takes
+ * to create them. Everything is passed on to it.
+ */
+final class CountingFiler implements Filer {
+
+    private final Filer filer;
+    private int writes;
+    private long nanos;
+
+    CountingFiler(Filer filer) {
+        this.filer = filer;
+    }
+
+    int getWrites() {
+        return writes;
+    }
+
+    /** Time javac spent creating the files, checking their names against every type it knows of included. */
+    long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+            throws IOException {
+        writes++;
+        final long start = System.nanoTime();
+        try {
+            return filer.createSourceFile(name, originatingElements);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+            throws IOException {
+        writes++;
+        final long start = System.nanoTime();
+        try {
+            return filer.createClassFile(name, originatingElements);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public FileObject createResource(JavaFileManager.Location location, CharSequence pkg,
+                                     CharSequence relativeName, Element... originatingElements)
+            throws IOException {
+        writes++;
+        final long start = System.nanoTime();
+        try {
+            return filer.createResource(location, pkg, relativeName, originatingElements);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public FileObject getResource(JavaFileManager.Location location, CharSequence pkg,
+                                  CharSequence relativeName) throws IOException {
+        return filer.getResource(location, pkg, relativeName);
+    }
+}
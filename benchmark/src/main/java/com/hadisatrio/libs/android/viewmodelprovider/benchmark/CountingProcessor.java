@@ -0,0 +1,138 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Wraps a {@link Processor} so the files it writes go through a {@link CountingFiler}, and the time
+ * spent in it is told apart from the time javac spends on its own.
+ */
+final class CountingProcessor implements Processor {
+
+    private final Processor processor;
+    private CountingFiler filer;
+    private long nanos;
+
+    CountingProcessor(Processor processor) {
+        this.processor = processor;
+    }
+
+    int getWrites() {
+        return filer != null ? filer.getWrites() : 0;
+    }
+
+    /** Time spent in {@code init()} and {@code process()}, minus what the {@link Filer} took. */
+    long getNanos() {
+        return nanos - getFilerNanos();
+    }
+
+    long getFilerNanos() {
+        return filer != null ? filer.getNanos() : 0;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return processor.getSupportedOptions();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return processor.getSupportedAnnotationTypes();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return processor.getSupportedSourceVersion();
+    }
+
+    @Override
+    public void init(final ProcessingEnvironment processingEnv) {
+        filer = new CountingFiler(processingEnv.getFiler());
+        final long start = System.nanoTime();
+        processor.init(new ProcessingEnvironment() {
+            @Override
+            public Map<String, String> getOptions() {
+                return processingEnv.getOptions();
+            }
+
+            @Override
+            public Messager getMessager() {
+                return processingEnv.getMessager();
+            }
+
+            @Override
+            public Filer getFiler() {
+                return filer;
+            }
+
+            @Override
+            public Elements getElementUtils() {
+                return processingEnv.getElementUtils();
+            }
+
+            @Override
+            public Types getTypeUtils() {
+                return processingEnv.getTypeUtils();
+            }
+
+            @Override
+            public SourceVersion getSourceVersion() {
+                return processingEnv.getSourceVersion();
+            }
+
+            @Override
+            public Locale getLocale() {
+                return processingEnv.getLocale();
+            }
+        });
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final long start = System.nanoTime();
+        try {
+            return processor.process(annotations, roundEnv);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public Iterable<? extends Completion> getCompletions(Element element, AnnotationMirror annotation,
+                                                         ExecutableElement member, String userText) {
+        return processor.getCompletions(element, annotation, member, userText);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Polls the total heap in use from a thread of its own, keeping the highest figure seen. Unlike the
+ * memory pools' peaks, which each peak at a moment of their own, it is a figure the heap actually
+ * reached, give or take whatever came and went between two polls.
+ */
+final class HeapSampler implements Runnable {
+
+    private static final long INTERVAL_MILLIS = 1;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final Thread thread = new Thread(this, "HeapSampler");
+    private volatile boolean stopped;
+    private long peakBytes;
+
+    private HeapSampler() {
+    }
+
+    static HeapSampler start() {
+        final HeapSampler sampler = new HeapSampler();
+        sampler.thread.setDaemon(true);
+        sampler.thread.start();
+        return sampler;
+    }
+
+    /** Stops polling, returning the most heap seen in use. */
+    long stop() {
+        stopped = true;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sample();
+        return peakBytes;
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            sample();
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sample() {
+        peakBytes = Math.max(peakBytes, memory.getHeapMemoryUsage().getUsed());
+    }
+}
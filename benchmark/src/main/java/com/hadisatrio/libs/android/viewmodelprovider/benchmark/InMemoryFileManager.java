@@ -0,0 +1,110 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * Keeps everything javac and the processor write in memory, so the harness doesn't measure disk I/O.
+ */
+final class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    private final Map<String, ByteArrayOutputStream> outputs = new HashMap<>();
+
+    InMemoryFileManager(StandardJavaFileManager fileManager) {
+        super(fileManager);
+    }
+
+    Map<String, ByteArrayOutputStream> getOutputs() {
+        return outputs;
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                               JavaFileObject.Kind kind, FileObject sibling) {
+        return new MemoryFileObject(location + "/" + className.replace('.', '/') + kind.extension, kind);
+    }
+
+    @Override
+    public FileObject getFileForOutput(Location location, String packageName, String relativeName,
+                                       FileObject sibling) {
+        return new MemoryFileObject(location + "/" + packageName.replace('.', '/') + "/" + relativeName,
+                JavaFileObject.Kind.OTHER);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+        return a.toUri().equals(b.toUri());
+    }
+
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName,
+                                         Set<JavaFileObject.Kind> kinds, boolean recurse)
+            throws IOException {
+        // Generated sources are handed to javac by the Filer directly, nothing to list for them.
+        if (location == StandardLocation.SOURCE_OUTPUT || location == StandardLocation.CLASS_OUTPUT) {
+            return Collections.emptyList();
+        }
+        return super.list(location, packageName, kinds, recurse);
+    }
+
+    private final class MemoryFileObject extends SimpleJavaFileObject {
+
+        private final String path;
+
+        MemoryFileObject(String path, Kind kind) {
+            super(URI.create("mem:///" + path), kind);
+            this.path = path;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            outputs.put(path, output);
+            return output;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            final ByteArrayOutputStream output = outputs.get(path);
+            return output != null ? output.toString() : "";
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            final ByteArrayOutputStream output = outputs.get(path);
+            return new ByteArrayInputStream(output != null ? output.toByteArray() : new byte[0]);
+        }
+    }
+}
@@ -0,0 +1,578 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProviderProcessor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles a synthetic module of {@code @GeneratedProvider} classes in memory without
+ * {@link GeneratedProviderProcessor}, then runs the processor alone over it ({@code -proc:only}),
+ * timing what it spends in {@code init()} and {@code process()}. Compiling the generated sources,
+ * and javac's {@code Filer} checking each new file against every type it knows of, are left out:
+ * that is javac's cost rather than the processor's. Exits with a non-zero status when
+ * the processor takes more than its budget, a fraction of the time javac needs for the module.
+ *
+ * <p>Arguments are {@code key=value} pairs: {@code classes}, {@code warmupClasses},
+ * {@code samples} (compilations to keep the fastest of), {@code budgetRatio}, {@code classpath}
+ * (must contain the Android and Architecture Components classes) and {@code report} (where to write
+ * the JSON report). With {@code parallelParity=true} the module is compiled once more with
+ * {@code alfred.parallel} enabled, failing unless the generated sources are identical to the
+ * sequential ones. With {@code backendParity=true} it is compiled once more with
+ * {@code alfred.backend=bytecode}, failing unless the providers written as class files declare
+ * exactly what the compiled sources do, and hand out and store the same when run against a real
+ * {@code ViewModelStore}. With {@code nameClashes=true} a {@code ViewModel} whose constructor
+ * parameters are named after what the generated code declares is compiled under several sets of
+ * processor options, failing unless it compiles every time, without unchecked or raw type warnings.
+ * Given an {@code androidxClasspath} (containing the AndroidX classes instead), it is compiled in
+ * AndroidX mode as well.
+ */
+public final class ProcessorScalabilityHarness {
+
+    private static final String SYNTHETIC_PACKAGE = "com.hadisatrio.libs.android.viewmodelprovider.synthetic";
+    private static final String BYTECODE_BACKEND_OPTION = "-Aalfred.backend=bytecode";
+    private static final String PROCESSING_ONLY_OPTION = "-proc:only";
+
+    // Projects building with -Werror mustn't trip over the generated code.
+    private static final String[] STRICT_OPTIONS = {"-Xlint:unchecked,rawtypes", "-Werror"};
+    private static final String OWNER_CLASS_NAME = SYNTHETIC_PACKAGE + ".StoreBackedFragment";
+
+    // Names the generated code declares next to the constructor's parameters.
+    private static final String[] CLASHING_NAMES = {"e", "key", "KEY", "activity", "fragment", "hostActivity",
+            "parentFragment", "viewModel", "start", "executor", "callback", "store", "instance", "sentinel",
+            "MAIN_THREAD", "extras", "screen", "provider", "modelClass"};
+
+    // Each generates code of its own around the constructor's parameters.
+    private static final String[][] CLASHING_OPTION_SETS = {
+            {},
+            {"-Aalfred.factory=" + SYNTHETIC_PACKAGE + ".Registry"},
+            {"-Aalfred.watch=true"},
+            {"-Aalfred.monitor=true", "-Aalfred.trace=true"},
+            {BYTECODE_BACKEND_OPTION},
+    };
+    private static final String[][] ANDROIDX_CLASHING_OPTION_SETS = {
+            {"-Aalfred.androidx=true"},
+            {"-Aalfred.androidx=true", "-Aalfred.watch=true"},
+            {"-Aalfred.androidx=true", "-Aalfred.monitor=true", "-Aalfred.trace=true"},
+    };
+
+    private ProcessorScalabilityHarness() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final List<String> failures = run(parseOptions(args));
+        if (!failures.isEmpty()) {
+            for (String failure : failures) {
+                System.err.println(failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    /** Runs the checks the given options ask for, returning what failed. */
+    static List<String> run(Map<String, String> options) throws IOException {
+        final int classes = Integer.parseInt(option(options, "classes", "10000"));
+        final int warmupClasses = Integer.parseInt(option(options, "warmupClasses", "1000"));
+        final int samples = Integer.parseInt(option(options, "samples", "1"));
+        final double budgetRatio = Double.parseDouble(option(options, "budgetRatio", "2"));
+        final String classpath = option(options, "classpath", System.getProperty("java.class.path"));
+        final String report = options.get("report");
+        final boolean parallelParity = Boolean.parseBoolean(option(options, "parallelParity", "false"));
+        final boolean backendParity = Boolean.parseBoolean(option(options, "backendParity", "false"));
+        final boolean nameClashes = Boolean.parseBoolean(option(options, "nameClashes", "false"));
+        final String androidxClasspath = options.get("androidxClasspath");
+        final List<String> failures = new ArrayList<>();
+
+        if (nameClashes) {
+            // Throws on the first compilation error.
+            int optionSets = 0;
+            for (String[] optionSet : CLASHING_OPTION_SETS) {
+                compile(clashingSources("android.arch.lifecycle.ViewModel", "android.support.v4.app.Fragment"),
+                        classpath, true, strict(optionSet));
+                optionSets++;
+            }
+            if (androidxClasspath != null) {
+                for (String[] optionSet : ANDROIDX_CLASHING_OPTION_SETS) {
+                    compile(clashingSources("androidx.lifecycle.ViewModel", "androidx.fragment.app.Fragment"),
+                            androidxClasspath, true, strict(optionSet));
+                    optionSets++;
+                }
+            }
+            System.out.println(String.format(Locale.US,
+                    "Constructor parameters named %s compiled under %d sets of processor options.",
+                    Arrays.toString(CLASHING_NAMES), optionSets));
+        }
+
+        // Let javac and the processor get JIT-compiled before anything is measured.
+        compile(syntheticSources(warmupClasses), classpath, false);
+        compile(syntheticSources(warmupClasses), classpath, true, PROCESSING_ONLY_OPTION);
+        if (backendParity) {
+            compile(syntheticSources(warmupClasses), classpath, true, PROCESSING_ONLY_OPTION,
+                    BYTECODE_BACKEND_OPTION);
+        }
+
+        // The processor is timed on its own, compiling what it generated is javac's business. What it
+        // may take is relative to what javac takes on the module, which scales with the machine.
+        // Small modules compile quickly enough for a stray collection or JIT compilation to skew a single
+        // sample, so the fastest of each is kept.
+        final List<JavaFileObject> sources = syntheticSources(classes);
+        Result baseline = null;
+        Result processed = null;
+        for (int i = 0; i < samples; i++) {
+            final Result baselineSample = compile(sources, classpath, false);
+            if (baseline == null || baselineSample.wallNanos < baseline.wallNanos) {
+                baseline = baselineSample;
+            }
+            final Result processedSample = compile(sources, classpath, true, PROCESSING_ONLY_OPTION);
+            if (processed == null || processedSample.processorNanos < processed.processorNanos) {
+                processed = processedSample;
+            }
+        }
+        final Result bytecode = backendParity
+                ? compile(sources, classpath, true, PROCESSING_ONLY_OPTION, BYTECODE_BACKEND_OPTION)
+                : null;
+
+        final double perElementMicros = processed.processorNanos / 1000.0 / classes;
+        final double processorRatio = (double) processed.processorNanos / baseline.wallNanos;
+
+        System.out.println(String.format(Locale.US,
+                "%d classes: %.1f ms compiling without processor, %.1f ms in the processor, %.1f us per class, "
+                        + "%.2f of the compilation (budget %.2f), peak heap used %d MB, %d Filer writes taking "
+                        + "javac %.1f ms.",
+                classes, baseline.wallNanos / 1e6, processed.processorNanos / 1e6, perElementMicros,
+                processorRatio, budgetRatio, processed.peakHeapUsedBytes / (1024 * 1024), processed.filerWrites,
+                processed.filerNanos / 1e6));
+
+        if (bytecode != null) {
+            System.out.println(String.format(Locale.US,
+                    "%d classes: %.1f ms in the processor writing bytecode, %.1f us per class.",
+                    classes, bytecode.processorNanos / 1e6, bytecode.processorNanos / 1000.0 / classes));
+        }
+
+        if (report != null) {
+            writeReport(new File(report), classes, budgetRatio, perElementMicros, processorRatio, baseline,
+                    processed, bytecode);
+        }
+
+        if (backendParity) {
+            // Compiled all the way this time, the providers get loaded and run.
+            final String difference = compareProviders(compile(sources, classpath, true),
+                    compile(sources, classpath, true, BYTECODE_BACKEND_OPTION), classpath);
+            if (difference != null) {
+                failures.add("Bytecode backend generated different providers than the source one: " + difference);
+            }
+        }
+
+        if (parallelParity) {
+            final Result parallel = compile(sources, classpath, true, PROCESSING_ONLY_OPTION,
+                    "-Aalfred.parallel=true");
+            System.out.println(String.format(Locale.US,
+                    "%d classes: %.1f ms in the processor in parallel mode, %.1f us per class.",
+                    classes, parallel.processorNanos / 1e6, parallel.processorNanos / 1000.0 / classes));
+
+            if (!parallel.generatedSources.equals(processed.generatedSources)) {
+                failures.add("Parallel mode generated different sources than sequential mode.");
+            }
+        }
+
+        if (processorRatio > budgetRatio) {
+            failures.add(String.format(Locale.US, "GeneratedProviderProcessor took %.2f of the time javac takes "
+                    + "to compile the module, over its budget of %.2f.", processorRatio, budgetRatio));
+        }
+        return failures;
+    }
+
+    private static String[] strict(String[] processorOptions) {
+        final String[] options = Arrays.copyOf(processorOptions, processorOptions.length + STRICT_OPTIONS.length);
+        System.arraycopy(STRICT_OPTIONS, 0, options, processorOptions.length, STRICT_OPTIONS.length);
+        return options;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String key, String defaultValue) {
+        final String value = options.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    private static List<JavaFileObject> syntheticSources(int count) {
+        final List<JavaFileObject> sources = new ArrayList<>(count + 2);
+
+        // Half of the classes share an intermediate base class, as real modules tend to.
+        sources.add(new SourceFile(SYNTHETIC_PACKAGE + ".BaseViewModel", ""
+                + "package " + SYNTHETIC_PACKAGE + ";\n"
+                + "public abstract class BaseViewModel extends android.arch.lifecycle.ViewModel {\n"
+                + "}\n"));
+
+        // Hands out a store of the caller's, so the backends' providers can be run side by side.
+        sources.add(new SourceFile(OWNER_CLASS_NAME, ""
+                + "package " + SYNTHETIC_PACKAGE + ";\n"
+                + "public final class StoreBackedFragment extends android.support.v4.app.Fragment {\n"
+                + "    private final android.arch.lifecycle.ViewModelStore store;\n"
+                + "    public StoreBackedFragment(android.arch.lifecycle.ViewModelStore store) {\n"
+                + "        this.store = store;\n"
+                + "    }\n"
+                + "    @Override\n"
+                + "    public android.arch.lifecycle.ViewModelStore getViewModelStore() {\n"
+                + "        return store;\n"
+                + "    }\n"
+                + "}\n"));
+
+        for (int i = 0; i < count; i++) {
+            final String packageName = SYNTHETIC_PACKAGE + ".p" + (i / 100);
+            final String simpleName = "SyntheticViewModel" + i;
+            final String superclass = i % 2 == 0
+                    ? "android.arch.lifecycle.ViewModel"
+                    : SYNTHETIC_PACKAGE + ".BaseViewModel";
+            // A third asks for the optional overloads too.
+            final String attributes = i % 3 == 0 ? "(keyed = true, shared = true)" : "";
+            sources.add(new SourceFile(packageName + "." + simpleName, ""
+                    + "package " + packageName + ";\n"
+                    + "@com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider" + attributes + "\n"
+                    + "public final class " + simpleName + " extends " + superclass + " {\n"
+                    + "    public " + simpleName + "(String name, long id, java.util.List<Integer> items) {\n"
+                    + "    }\n"
+                    + "}\n"));
+        }
+
+        return sources;
+    }
+
+    // One class asks for every optional method, the other for none, so the bytecode backend takes it.
+    // A fragment binds both.
+    private static List<JavaFileObject> clashingSources(String viewModelClass, String fragmentClass) {
+        final StringBuilder parameters = new StringBuilder();
+        for (String name : CLASHING_NAMES) {
+            if (parameters.length() > 0) {
+                parameters.append(", ");
+            }
+            parameters.append("String ").append(name);
+        }
+        // Parameterized, so unchecked conversions in the generated code show.
+        parameters.append(", java.util.List<String> items");
+
+        final List<JavaFileObject> sources = new ArrayList<>(3);
+        final String[][] classes = {
+                {"ClashingViewModel", "(suppliers = true, async = true, lazy = true, keyed = true, shared = true)"},
+                {"PlainClashingViewModel", ""},
+        };
+        for (String[] clashingClass : classes) {
+            sources.add(new SourceFile(SYNTHETIC_PACKAGE + "." + clashingClass[0], ""
+                    + "package " + SYNTHETIC_PACKAGE + ";\n"
+                    + "@com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider" + clashingClass[1] + "\n"
+                    + "public final class " + clashingClass[0] + " extends " + viewModelClass + " {\n"
+                    + "    public " + clashingClass[0] + "(" + parameters + ") {\n"
+                    + "    }\n"
+                    + "}\n"));
+        }
+        sources.add(new SourceFile(SYNTHETIC_PACKAGE + ".ClashingFragment", ""
+                + "package " + SYNTHETIC_PACKAGE + ";\n"
+                + "@com.hadisatrio.libs.android.viewmodelprovider.GeneratedBinder("
+                + "{ClashingViewModel.class, PlainClashingViewModel.class})\n"
+                + "public final class ClashingFragment extends " + fragmentClass + " {\n"
+                + "    ClashingViewModel clashingViewModel;\n"
+                + "    PlainClashingViewModel plainClashingViewModel;\n"
+                + "}\n"));
+        return sources;
+    }
+
+    private static Result compile(List<JavaFileObject> sources, String classpath, boolean withProcessor,
+                                  String... processorOptions) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final InMemoryFileManager fileManager = new InMemoryFileManager(
+                compiler.getStandardFileManager(diagnostics, Locale.US, null)
+        );
+        final CountingProcessor processor = new CountingProcessor(new GeneratedProviderProcessor());
+
+        final List<String> options = new ArrayList<>(Arrays.asList(
+                "-classpath", classpath, "-implicit:none", "-nowarn", "-Xlint:none"
+        ));
+        if (!withProcessor) {
+            options.add("-proc:none");
+        }
+        options.addAll(Arrays.asList(processorOptions));
+
+        final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                options, null, sources);
+        if (withProcessor) {
+            task.setProcessors(Collections.singletonList(processor));
+        }
+
+        System.gc();
+        // Sampled, the memory pools peak at moments of their own and their peaks don't add up.
+        final HeapSampler heap = HeapSampler.start();
+
+        final long start = System.nanoTime();
+        final boolean success = task.call();
+        final long wallNanos = System.nanoTime() - start;
+
+        final long peakHeapUsedBytes = heap.stop();
+        fileManager.close();
+
+        if (!success) {
+            throw new IllegalStateException("Synthetic module failed to compile: " + diagnostics.getDiagnostics());
+        }
+
+        final Map<String, String> generatedSources = new TreeMap<>();
+        final Map<String, byte[]> classFiles = new TreeMap<>();
+        final String classOutputPrefix = StandardLocation.CLASS_OUTPUT.getName() + "/";
+        for (Map.Entry<String, ByteArrayOutputStream> output : fileManager.getOutputs().entrySet()) {
+            if (output.getKey().startsWith(StandardLocation.SOURCE_OUTPUT.getName())) {
+                generatedSources.put(output.getKey(), output.getValue().toString("UTF-8"));
+            } else if (output.getKey().startsWith(classOutputPrefix)) {
+                final String path = output.getKey().substring(classOutputPrefix.length());
+                classFiles.put(path.substring(0, path.length() - JavaFileObject.Kind.CLASS.extension.length())
+                        .replace('/', '.'), output.getValue().toByteArray());
+            }
+        }
+
+        return new Result(wallNanos, processor.getNanos(), processor.getFilerNanos(), peakHeapUsedBytes,
+                processor.getWrites(), generatedSources, classFiles);
+    }
+
+    // Loads the providers of both compilations and compares everything they declare, generic
+    // signatures and constants included, then what they do. Returns the first difference found, or null.
+    private static String compareProviders(Result sourceResult, Result bytecodeResult, String classpath)
+            throws IOException {
+        if (!sourceResult.classFiles.keySet().equals(bytecodeResult.classFiles.keySet())) {
+            return "the classes generated differ";
+        }
+
+        final List<URL> urls = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            urls.add(new File(entry).toURI().toURL());
+        }
+        final URLClassLoader androidLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]));
+        try {
+            final ClassLoader sourceLoader = new MemoryClassLoader(sourceResult.classFiles, androidLoader);
+            final ClassLoader bytecodeLoader = new MemoryClassLoader(bytecodeResult.classFiles, androidLoader);
+
+            for (String className : sourceResult.classFiles.keySet()) {
+                if (!className.endsWith("Provider")) continue;
+
+                final String expected = describe(Class.forName(className, false, sourceLoader));
+                final String actual = describe(Class.forName(className, false, bytecodeLoader));
+                if (!expected.equals(actual)) {
+                    return className + "\n" + expected + "\nversus\n" + actual;
+                }
+
+                final String expectedRun = run(className, sourceLoader);
+                final String actualRun = run(className, bytecodeLoader);
+                if (!expectedRun.equals(actualRun)) {
+                    return className + " at run time\n" + expectedRun + "\nversus\n" + actualRun;
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Couldn't load the generated providers.", e);
+        } finally {
+            androidLoader.close();
+        }
+        return null;
+    }
+
+    // Calls the fragment get()s of the provider twice each on a fresh store, the second time with other
+    // arguments, and tells what they returned and what the store ends up holding under their keys.
+    private static String run(String providerName, ClassLoader loader) throws ReflectiveOperationException {
+        final Class<?> storeClass = Class.forName("android.arch.lifecycle.ViewModelStore", true, loader);
+        final Class<?> fragmentClass = Class.forName("android.support.v4.app.Fragment", true, loader);
+        final Class<?> providerClass = Class.forName(providerName, true, loader);
+        final Method storeGet = storeClass.getDeclaredMethod("get", String.class);
+        storeGet.setAccessible(true);
+
+        final Object store = storeClass.getConstructor().newInstance();
+        final Object owner = Class.forName(OWNER_CLASS_NAME, true, loader).getConstructor(storeClass)
+                .newInstance(store);
+        final String key = (String) providerClass.getField("KEY").get(null);
+        final StringBuilder description = new StringBuilder("KEY ").append(key);
+
+        final Method get = providerClass.getMethod("get", fragmentClass, String.class, long.class, List.class);
+        describeRun(description, get.invoke(null, owner, "name", 42L, Arrays.asList(4, 2)),
+                get.invoke(null, owner, "other", 7L, Collections.<Integer>emptyList()),
+                storeGet.invoke(store, key));
+
+        final Method keyedGet;
+        try {
+            keyedGet = providerClass.getMethod("get", fragmentClass, String.class, String.class, long.class,
+                    List.class);
+        } catch (NoSuchMethodException e) {
+            return description.toString();
+        }
+        describeRun(description, keyedGet.invoke(null, owner, "custom", "name", 42L, Arrays.asList(4, 2)),
+                keyedGet.invoke(null, owner, "custom", "other", 7L, Collections.<Integer>emptyList()),
+                storeGet.invoke(store, "custom"));
+        return description.toString();
+    }
+
+    private static void describeRun(StringBuilder description, Object first, Object second, Object stored) {
+        description.append(", returned ").append(first == null ? "null" : first.getClass().getName())
+                .append(second == first ? ", then the same" : ", then another")
+                .append(stored == first ? ", stored the same" : ", stored another");
+    }
+
+    private static String describe(Class<?> type) throws IllegalAccessException {
+        final TreeSet<String> members = new TreeSet<>();
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            members.add(constructor.toGenericString());
+        }
+        for (Method method : type.getDeclaredMethods()) {
+            members.add(method.toGenericString());
+        }
+        for (Field field : type.getDeclaredFields()) {
+            String member = field.toGenericString();
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                field.setAccessible(true);
+                member += " = " + field.get(null);
+            }
+            members.add(member);
+        }
+        for (Class<?> nestedType : type.getDeclaredClasses()) {
+            members.add(describe(nestedType));
+        }
+
+        return Modifier.toString(type.getModifiers()) + " " + type.getName()
+                + " extends " + type.getGenericSuperclass()
+                + " implements " + Arrays.toString(type.getGenericInterfaces())
+                + " " + members;
+    }
+
+    private static void writeReport(File file, int classes, double budgetRatio, double perElementMicros,
+                                    double processorRatio, Result baseline, Result processed, Result bytecode)
+            throws IOException {
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Couldn't create " + parent);
+        }
+
+        final Writer writer = new FileWriter(file);
+        try {
+            writer.write(String.format(Locale.US, "{\n"
+                            + "  \"classes\": %d,\n"
+                            + "  \"baselineWallMillis\": %.3f,\n"
+                            + "  \"processorMillis\": %.3f,\n"
+                            + "  \"perElementMicros\": %.3f,\n"
+                            + "  \"processorRatio\": %.3f,\n"
+                            + "  \"budgetRatio\": %.3f,\n"
+                            + "  \"peakHeapUsedBytes\": %d,\n"
+                            + "  \"filerWrites\": %d,\n"
+                            + "  \"filerMillis\": %.3f%s\n"
+                            + "}\n",
+                    classes, baseline.wallNanos / 1e6, processed.processorNanos / 1e6, perElementMicros,
+                    processorRatio, budgetRatio, processed.peakHeapUsedBytes, processed.filerWrites,
+                    processed.filerNanos / 1e6,
+                    bytecode == null ? "" : String.format(Locale.US, ",\n  \"bytecodeProcessorMillis\": %.3f",
+                            bytecode.processorNanos / 1e6)));
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static final class Result {
+
+        final long wallNanos;
+        final long processorNanos;
+        final long filerNanos;
+        final long peakHeapUsedBytes;
+        final int filerWrites;
+        final Map<String, String> generatedSources;
+        final Map<String, byte[]> classFiles;
+
+        Result(long wallNanos, long processorNanos, long filerNanos, long peakHeapUsedBytes, int filerWrites,
+               Map<String, String> generatedSources, Map<String, byte[]> classFiles) {
+            this.wallNanos = wallNanos;
+            this.processorNanos = processorNanos;
+            this.filerNanos = filerNanos;
+            this.peakHeapUsedBytes = peakHeapUsedBytes;
+            this.filerWrites = filerWrites;
+            this.generatedSources = generatedSources;
+            this.classFiles = classFiles;
+        }
+    }
+
+    private static final class MemoryClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classFiles;
+
+        MemoryClassLoader(Map<String, byte[]> classFiles, ClassLoader parent) {
+            super(parent);
+            this.classFiles = classFiles;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            final byte[] classFile = classFiles.get(name);
+            if (classFile == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final String content;
+
+        SourceFile(String className, String content) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs {@link ConfigurationChurnHarness} through a few thousand screens, with its default retained
+ * heap budget.
+ */
+public final class ConfigurationChurnHarnessTest {
+
+    @Test
+    public void churnConstructsAndClearsOncePerScreen() throws IOException {
+        final Map<String, String> options = new HashMap<>();
+        options.put("screens", "5000");
+        options.put("warmupScreens", "1000");
+        assertEquals(Collections.<String>emptyList(), ConfigurationChurnHarness.run(options));
+    }
+}
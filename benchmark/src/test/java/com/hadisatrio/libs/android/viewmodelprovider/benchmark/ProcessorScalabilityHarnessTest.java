@@ -0,0 +1,84 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs {@link ProcessorScalabilityHarness} on modules small enough for every build. The classpath
+ * holding the Android classes comes in through the {@code alfred.androidClasspath} property, the
+ * one holding the AndroidX classes through {@code alfred.androidxClasspath}. Without the latter,
+ * name clashes are only checked against the Android classes.
+ */
+public final class ProcessorScalabilityHarnessTest {
+
+    // Leaves the timing to processorStaysWithinBudget(), the other checks are about what gets generated.
+    private static final String UNBOUNDED_BUDGET_RATIO = "1000";
+
+    @Test
+    public void processorStaysWithinBudget() throws IOException {
+        // What the processor sets up once weighs more on a small module than on the one processorBenchmark
+        // measures, so the budget is looser here.
+        final Map<String, String> options = options(500, 500);
+        options.put("samples", "5");
+        options.put("budgetRatio", "3");
+        assertEquals(Collections.<String>emptyList(), ProcessorScalabilityHarness.run(options));
+    }
+
+    @Test
+    public void parallelModeGeneratesTheSameSources() throws IOException {
+        final Map<String, String> options = options(100, 50);
+        options.put("budgetRatio", UNBOUNDED_BUDGET_RATIO);
+        options.put("parallelParity", "true");
+        assertEquals(Collections.<String>emptyList(), ProcessorScalabilityHarness.run(options));
+    }
+
+    @Test
+    public void bytecodeBackendBehavesLikeTheSources() throws IOException {
+        final Map<String, String> options = options(100, 50);
+        options.put("budgetRatio", UNBOUNDED_BUDGET_RATIO);
+        options.put("backendParity", "true");
+        assertEquals(Collections.<String>emptyList(), ProcessorScalabilityHarness.run(options));
+    }
+
+    @Test
+    public void clashingParameterNamesCompile() throws IOException {
+        final Map<String, String> options = options(10, 10);
+        options.put("budgetRatio", UNBOUNDED_BUDGET_RATIO);
+        options.put("nameClashes", "true");
+        final String androidxClasspath = System.getProperty("alfred.androidxClasspath");
+        if (androidxClasspath != null && !androidxClasspath.isEmpty()) {
+            options.put("androidxClasspath", androidxClasspath);
+        }
+        assertEquals(Collections.<String>emptyList(), ProcessorScalabilityHarness.run(options));
+    }
+
+    private static Map<String, String> options(int classes, int warmupClasses) {
+        final Map<String, String> options = new HashMap<>();
+        options.put("classes", String.valueOf(classes));
+        options.put("warmupClasses", String.valueOf(warmupClasses));
+        options.put("classpath", System.getProperty("alfred.androidClasspath"));
+        return options;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.benchmark;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs {@link WarmPathAllocationHarness} with its default budget, enough for the
+ * {@code ViewModelProvider} a warm call allocates but not for a factory on top of it.
+ */
+public final class WarmPathAllocationHarnessTest {
+
+    @Test
+    public void warmGetAllocatesNoFactory() {
+        assumeTrue(WarmPathAllocationHarness.isMeasurable());
+        assertEquals(Collections.<String>emptyList(), WarmPathAllocationHarness.run(200000, 50000, 32));
+    }
+}
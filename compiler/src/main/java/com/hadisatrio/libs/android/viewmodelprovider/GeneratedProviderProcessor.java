@@ -16,26 +16,36 @@
 
 package com.hadisatrio.libs.android.viewmodelprovider;
 
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-
 import com.google.auto.service.AutoService;
+import com.hadisatrio.libs.android.viewmodelprovider.internal.AnnotatedScreen;
+import com.hadisatrio.libs.android.viewmodelprovider.internal.AnnotatedViewModel;
+import com.hadisatrio.libs.android.viewmodelprovider.internal.ApiFlavor;
+import com.hadisatrio.libs.android.viewmodelprovider.internal.BaselineProfile;
+import com.hadisatrio.libs.android.viewmodelprovider.internal.BytecodeGenerator;
 import com.hadisatrio.libs.android.viewmodelprovider.internal.ConstructorParameter;
+import com.hadisatrio.libs.android.viewmodelprovider.internal.Pair;
+import com.hadisatrio.libs.android.viewmodelprovider.internal.ProcessingStats;
+import com.hadisatrio.libs.android.viewmodelprovider.internal.ProviderGenerator;
+import com.hadisatrio.libs.android.viewmodelprovider.internal.RenderedProvider;
 import com.squareup.javapoet.ClassName;
-import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
-import com.squareup.javapoet.MethodSpec;
-import com.squareup.javapoet.ParameterSpec;
-import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
-import com.squareup.javapoet.TypeVariableName;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Filer;
@@ -49,35 +59,122 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.Name;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.MirroredTypesException;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 
 @AutoService(Processor.class)
 public final class GeneratedProviderProcessor extends AbstractProcessor {
 
-    private static final String VIEW_MODEL_CLASS_NAME = "android.arch.lifecycle.ViewModel";
-    private static final String VIEW_MODEL_FACTORY_CLASS_NAME = "android.arch.lifecycle.ViewModelProvider.Factory";
-    private static final String VIEW_MODEL_PROVIDERS_CLASS_NAME = "android.arch.lifecycle.ViewModelProviders";
-    private static final String FRAGMENT_ACTIVITY_CLASS_NAME = "android.support.v4.app.FragmentActivity";
-    private static final String FRAGMENT_CLASS_NAME = "android.support.v4.app.Fragment";
-
     private static final String NON_NULL_NAME = "NonNull";
     private static final String NULLABLE_NAME = "Nullable";
-
-    private static final String PROVIDER_CLASS_SUFFIX = "Provider";
-    private static final String FACTORY_CLASS_SUFFIX = "Factory";
-
+    private static final String RESETTABLE_NAME = "com.hadisatrio.libs.android.viewmodelprovider.Resettable";
+
+    /**
+     * Fully-qualified name of the module-wide {@code ViewModelProvider.Factory} to generate,
+     * e.g. {@code -Aalfred.factory=com.example.AppViewModelFactory}. Nothing is generated if absent.
+     */
+    static final String OPTION_FACTORY = "alfred.factory";
+
+    /**
+     * When {@code true}, time each phase of the processing and report it as a note along with a JSON
+     * report ({@value #STATS_FILE_NAME}) in the generated sources directory.
+     */
+    static final String OPTION_STATS = "alfred.stats";
+
+    /**
+     * When {@code true}, build and render the generated sources on a fork-join pool sized to the
+     * available processors. Files are still written from the processing thread, in the same order.
+     */
+    static final String OPTION_PARALLEL = "alfred.parallel";
+
+    /**
+     * When {@code true}, generate code against AndroidX instead of the Architecture Components and
+     * the support library. Each {@code ViewModel} then gets a single stateless factory, which is
+     * handed its arguments through {@code CreationExtras}.
+     */
+    static final String OPTION_ANDROIDX = "alfred.androidx";
+
+    /**
+     * How to report {@code @Main} constructor parameters the {@code ViewModel} would outlive, i.e.
+     * activities, fragments, views and non-{@code Application} contexts: {@code warning} (the
+     * default), {@code error} or {@code none}.
+     */
+    static final String OPTION_LEAKS = "alfred.leaks";
+
+    /**
+     * When {@code true}, register the lifecycle-bound arguments of each created {@code ViewModel}
+     * with the runtime's {@code RetentionWatcher}. Meant for debug builds only, set it per variant.
+     */
+    static final String OPTION_WATCH = "alfred.watch";
+
+    /**
+     * When {@code true}, report store hits and misses and the time spent in each constructor to the
+     * runtime's {@code AlfredMonitor}. Generated code is left untouched when absent.
+     */
+    static final String OPTION_MONITOR = "alfred.monitor";
+
+    /**
+     * When {@code true}, wrap each {@code ViewModel} creation in a {@code TraceCompat} section named
+     * after its class, so it shows up in Perfetto and systrace captures.
+     */
+    static final String OPTION_TRACE = "alfred.trace";
+
+    /**
+     * When {@code true}, write baseline profile rules for every generated class and for the methods
+     * running each time a screen gets created, plus the {@code ViewModel} constructors they call, to
+     * {@value #PROFILE_FILE_NAME} in the generated sources directory.
+     */
+    static final String OPTION_PROFILE = "alfred.profile";
+
+    /**
+     * What to generate providers as: {@code source} (the default) or {@code bytecode}, which writes
+     * class files javac doesn't have to compile. Providers the bytecode backend doesn't cover are
+     * still generated as sources, see {@link BytecodeGenerator#supports(AnnotatedViewModel)}.
+     */
+    static final String OPTION_BACKEND = "alfred.backend";
+
+    private static final String STATS_FILE_NAME = "alfred-stats.json";
+    private static final int STATS_SLOWEST_COUNT = 5;
+    private static final String PROFILE_FILE_NAME = "alfred-baseline-prof.txt";
+
+    // Lets Gradle know how incremental we are for the given options, see the
+    // META-INF/gradle/incremental.annotation.processors descriptor.
+    private static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
+    private static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
+
+    private ApiFlavor flavor;
     private Elements elementUtils;
     private Types typeUtils;
     private Filer filer;
     private Messager messager;
 
+    private TypeElement viewModelElement;
+    private TypeMirror viewModelType;
+    private Diagnostic.Kind leakDiagnosticKind;
+    private boolean watchRetention;
+    private ProviderGenerator generator;
+    private BytecodeGenerator bytecodeGenerator;
+    private TypeMirror applicationType;
+    private final List<TypeMirror> lifecycleBoundTypes = new ArrayList<>();
+    private final Map<TypeElement, Boolean> resolvedSupertypes = new HashMap<>();
+
+    private ProcessingStats stats;
+    private ForkJoinPool renderingPool;
+    private ClassName registryClassName;
+    private BaselineProfile baselineProfile;
+    private final List<AnnotatedViewModel> pendingRegistryEntries = new ArrayList<>();
+    private final List<TypeElement> pendingRegistryElements = new ArrayList<>();
+
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
@@ -85,12 +182,103 @@ public final class GeneratedProviderProcessor extends AbstractProcessor {
         typeUtils = processingEnv.getTypeUtils();
         filer = processingEnv.getFiler();
         messager = processingEnv.getMessager();
+
+        flavor = Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_ANDROIDX))
+                ? ApiFlavor.ANDROIDX
+                : ApiFlavor.SUPPORT;
+
+        // May be null if the Architecture Components aren't on the compile classpath. That only
+        // becomes an error once we actually run into an annotated class.
+        viewModelElement = elementUtils.getTypeElement(flavor.getViewModel().toString());
+        if (viewModelElement != null) {
+            viewModelType = viewModelElement.asType();
+        }
+
+        final String leaks = processingEnv.getOptions().get(OPTION_LEAKS);
+        if (leaks == null || leaks.equalsIgnoreCase("warning")) {
+            leakDiagnosticKind = Diagnostic.Kind.WARNING;
+        } else if (leaks.equalsIgnoreCase("error")) {
+            leakDiagnosticKind = Diagnostic.Kind.ERROR;
+        } else if (!leaks.equalsIgnoreCase("none")) {
+            error("Unknown value '%s' for %s, expected warning, error or none.", leaks, OPTION_LEAKS);
+        }
+
+        watchRetention = Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_WATCH));
+        final boolean monitor = Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_MONITOR));
+        final boolean trace = Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_TRACE));
+        generator = new ProviderGenerator(flavor, watchRetention, monitor, trace);
+
+        final String backend = processingEnv.getOptions().get(OPTION_BACKEND);
+        if (backend != null && backend.equalsIgnoreCase("bytecode")) {
+            bytecodeGenerator = new BytecodeGenerator(flavor, watchRetention, monitor, trace);
+        } else if (backend != null && !backend.equalsIgnoreCase("source")) {
+            error("Unknown value '%s' for %s, expected source or bytecode.", backend, OPTION_BACKEND);
+        }
+
+        // Context goes last, so the more specific types get to name the problem first.
+        if (leakDiagnosticKind != null || watchRetention) {
+            applicationType = getErasedType("android.app.Application");
+            for (String lifecycleBoundName : new String[]{
+                    "android.app.Activity",
+                    "android.app.Fragment",
+                    flavor.getFragment().toString(),
+                    "android.view.View",
+                    "android.content.Context"
+            }) {
+                final TypeMirror lifecycleBoundType = getErasedType(lifecycleBoundName);
+                if (lifecycleBoundType != null) {
+                    lifecycleBoundTypes.add(lifecycleBoundType);
+                }
+            }
+        }
+
+        stats = new ProcessingStats(Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_STATS)));
+
+        if (Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_PARALLEL))) {
+            renderingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+
+        if (Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_PROFILE))) {
+            baselineProfile = new BaselineProfile();
+        }
+
+        final String registryName = processingEnv.getOptions().get(OPTION_FACTORY);
+        if (registryName != null && !registryName.isEmpty()) {
+            registryClassName = ClassName.bestGuess(registryName);
+        }
+    }
+
+    private TypeMirror getErasedType(String className) {
+        final TypeElement element = elementUtils.getTypeElement(className);
+        return element != null ? typeUtils.erasure(element.asType()) : null;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        final Set<String> options = new LinkedHashSet<>();
+        options.add(OPTION_FACTORY);
+        options.add(OPTION_STATS);
+        options.add(OPTION_PARALLEL);
+        options.add(OPTION_ANDROIDX);
+        options.add(OPTION_LEAKS);
+        options.add(OPTION_WATCH);
+        options.add(OPTION_MONITOR);
+        options.add(OPTION_TRACE);
+        options.add(OPTION_PROFILE);
+        options.add(OPTION_BACKEND);
+        // The module-wide factory, the stats report and the baseline profile depend on every
+        // annotated class, so none of them can be isolating.
+        final boolean aggregating = registryClassName != null || (stats != null && stats.isEnabled())
+                || baselineProfile != null;
+        options.add(aggregating ? GRADLE_AGGREGATING : GRADLE_ISOLATING);
+        return options;
     }
 
     @Override
     public Set<String> getSupportedAnnotationTypes() {
         final Set<String> annotations = new LinkedHashSet<>();
         annotations.add(GeneratedProvider.class.getCanonicalName());
+        annotations.add(GeneratedBinder.class.getCanonicalName());
         return annotations;
     }
 
@@ -101,53 +289,272 @@ public final class GeneratedProviderProcessor extends AbstractProcessor {
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final long roundStart = stats.start();
+        processRound(roundEnv);
+        processBinders(roundEnv);
+        stats.recordRound(roundStart);
+
+        if (roundEnv.processingOver()) {
+            if (stats.isEnabled()) {
+                reportStats();
+            }
+            if (baselineProfile != null && !baselineProfile.isEmpty()) {
+                writeBaselineProfile();
+            }
+            if (renderingPool != null) {
+                renderingPool.shutdown();
+            }
+        }
 
-        for (Element annotatedElement : roundEnv.getElementsAnnotatedWith(GeneratedProvider.class)) {
+        // We have finished processing.
+        return true;
+    }
+
+    private void processRound(RoundEnvironment roundEnv) {
+
+        // Supertypes resolved in a previous round may have been regenerated since, start afresh.
+        resolvedSupertypes.clear();
+
+        final Set<? extends Element> annotatedElements = roundEnv.getElementsAnnotatedWith(GeneratedProvider.class);
+
+        // The module-wide factory is written once no more annotated classes show up, which is
+        // usually the round following the one in which the providers were generated.
+        if (annotatedElements.isEmpty() && !pendingRegistryEntries.isEmpty()) {
+            try {
+                final TypeSpec registry = withOriginatingElements(
+                        generator.generateRegistry(registryClassName, pendingRegistryEntries),
+                        pendingRegistryElements
+                );
+                stats.recordFootprint(registryClassName.toString(), registry);
+                if (baselineProfile != null) {
+                    baselineProfile.addType(registryClassName.packageName(), registry);
+                }
+                JavaFile.builder(registryClassName.packageName(), registry)
+                        .build()
+                        .writeTo(filer);
+            } catch (IOException e) {
+                error("Error while generating factory %s. Cause: %s.", registryClassName, e);
+            }
+            pendingRegistryEntries.clear();
+            pendingRegistryElements.clear();
+            return;
+        }
+
+        // Everything that needs the compiler's element and type utilities happens up front,
+        // on this thread. What's left after that only works on the resulting models.
+        final List<AnnotatedViewModel> viewModels = new ArrayList<>(annotatedElements.size());
+        final List<TypeElement> typeElements = new ArrayList<>(annotatedElements.size());
+        for (Element annotatedElement : annotatedElements) {
             if (annotatedElement.getKind() != ElementKind.CLASS) {
                 error(
                         annotatedElement,
                         "Only classes can be annotated with @%s.",
                         GeneratedProvider.class.getSimpleName()
                 );
-                return true; // Error message printed, exit processing.
+                return; // Error message printed, exit processing.
             }
 
             // We can cast it, because we know that it of ElementKind.CLASS.
             final TypeElement typeElement = (TypeElement) annotatedElement;
 
             // Check whether or not this class meets our pre-requisites.
-            try {
-                if (!isValidClass(typeElement)) {
-                    return true; // Error message printed, exit processing.
-                }
-            } catch (ClassNotFoundException e) {
+            if (viewModelElement == null) {
                 error(
                         "Couldn't find the required classes. "
                                 + "Have you declare Android Architecture Components libraries as "
                                 + "your project's dependency?"
                 );
-                return true; // Error message printed, exit processing.
+                return; // Error message printed, exit processing.
+            }
+
+            final Name className = typeElement.getQualifiedName();
+            long phaseStart = stats.start();
+            final boolean valid = isValidClass(typeElement);
+            stats.record(className, ProcessingStats.Phase.VALIDATION, phaseStart);
+            if (!valid) {
+                return; // Error message printed, exit processing.
             }
 
             try {
-                JavaFile.builder(getPackageName(typeElement), generateProvider(typeElement))
-                        .build()
-                        .writeTo(filer);
-            } catch (IOException | ClassNotFoundException | NoPackageNameException e) {
+                phaseStart = stats.start();
+                final AnnotatedViewModel viewModel = analyze(typeElement, true);
+                stats.record(className, ProcessingStats.Phase.ANALYSIS, phaseStart);
+
+                // A reused instance isn't constructed again, it would keep the first screen's arguments.
+                if (viewModel.isPooled() && !viewModel.getConstructorParameters().isEmpty()) {
+                    error(
+                            annotatedElement,
+                            "The class %s can't be pooled, its constructor takes arguments.",
+                            className
+                    );
+                    return; // Error message printed, exit processing.
+                }
+                viewModels.add(viewModel);
+                typeElements.add(typeElement);
+            } catch (NoPackageNameException e) {
                 error("Error while generating provider for class %s. Cause: %s.", typeElement, e);
-                return true; // Error message printed, exit processing.
+                return; // Error message printed, exit processing.
             } catch (DuplicateMainConstructorException e) {
                 error(
                         annotatedElement,
                         "Only one constructor can be annotated with @%s in a given class.",
                         Main.class.getSimpleName()
                 );
-                return true; // Error message printed, exit processing.
+                return; // Error message printed, exit processing.
             }
         }
 
-        // We have finished processing.
-        return true;
+        final List<RenderedProvider> providers;
+        try {
+            providers = renderProviders(viewModels, typeElements);
+        } catch (ExecutionException e) {
+            error("Error while generating providers. Cause: %s.", e.getCause());
+            return; // Error message printed, exit processing.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error("Interrupted while generating providers.");
+            return; // Error message printed, exit processing.
+        }
+
+        // Writes go through the Filer one at a time, in the order the classes were found.
+        for (int i = 0; i < providers.size(); i++) {
+            final AnnotatedViewModel viewModel = viewModels.get(i);
+            final TypeElement typeElement = typeElements.get(i);
+            final long phaseStart = stats.start();
+            try {
+                providers.get(i).writeTo(filer);
+            } catch (IOException e) {
+                error("Error while generating provider for class %s. Cause: %s.", typeElement, e);
+                return; // Error message printed, exit processing.
+            }
+            stats.record(typeElement.getQualifiedName(), ProcessingStats.Phase.WRITING, phaseStart);
+
+            if (baselineProfile != null) {
+                baselineProfile.addProvider(viewModel, providers.get(i).getTypeSpec());
+            }
+            if (registryClassName != null) {
+                pendingRegistryEntries.add(viewModel);
+                pendingRegistryElements.add(typeElement);
+            }
+        }
+    }
+
+    private void processBinders(RoundEnvironment roundEnv) {
+        for (Element annotatedElement : roundEnv.getElementsAnnotatedWith(GeneratedBinder.class)) {
+            if (annotatedElement.getKind() != ElementKind.CLASS) {
+                error(
+                        annotatedElement,
+                        "Only classes can be annotated with @%s.",
+                        GeneratedBinder.class.getSimpleName()
+                );
+                return; // Error message printed, exit processing.
+            }
+
+            final AnnotatedScreen screen = analyzeScreen((TypeElement) annotatedElement);
+            if (screen == null) {
+                return; // Error message printed, exit processing.
+            }
+
+            final TypeSpec binder = withOriginatingElements(generator.generateBinder(screen),
+                    Collections.singletonList(annotatedElement));
+            stats.recordFootprint(screen.getClassName().toString(), binder);
+            if (baselineProfile != null) {
+                baselineProfile.addType(screen.getPackageName(), binder);
+            }
+            try {
+                JavaFile.builder(screen.getPackageName(), binder)
+                        .build()
+                        .writeTo(filer);
+            } catch (IOException e) {
+                error("Error while generating binder for class %s. Cause: %s.", annotatedElement, e);
+                return; // Error message printed, exit processing.
+            }
+        }
+    }
+
+    private List<RenderedProvider> renderProviders(List<AnnotatedViewModel> viewModels, List<TypeElement> typeElements)
+            throws InterruptedException, ExecutionException {
+
+        final List<Callable<RenderedProvider>> renderings = new ArrayList<>(viewModels.size());
+        for (int i = 0; i < viewModels.size(); i++) {
+            final AnnotatedViewModel viewModel = viewModels.get(i);
+            final List<TypeElement> originatingElements = Collections.singletonList(typeElements.get(i));
+            renderings.add(new Callable<RenderedProvider>() {
+                @Override
+                public RenderedProvider call() {
+                    final long phaseStart = stats.start();
+                    final TypeSpec providerSpec = withOriginatingElements(generator.generateProvider(viewModel),
+                            originatingElements);
+                    final JavaFile javaFile = JavaFile.builder(viewModel.getPackageName(), providerSpec)
+                            .build();
+                    // The spec is still built, the stats and the baseline profile are worked out from it.
+                    final RenderedProvider provider = bytecodeGenerator != null && bytecodeGenerator.supports(viewModel)
+                            ? new RenderedProvider(javaFile, bytecodeGenerator.generateProvider(viewModel))
+                            : new RenderedProvider(javaFile);
+                    stats.record(viewModel.getClassName().toString(), ProcessingStats.Phase.SPEC_BUILDING,
+                            phaseStart);
+                    stats.recordFootprint(viewModel.getClassName().toString(), javaFile.typeSpec);
+                    return provider;
+                }
+            });
+        }
+
+        final List<RenderedProvider> providers = new ArrayList<>(renderings.size());
+        if (renderingPool == null || renderings.size() < 2) {
+            for (Callable<RenderedProvider> rendering : renderings) {
+                try {
+                    providers.add(rendering.call());
+                } catch (Exception e) {
+                    throw new ExecutionException(e);
+                }
+            }
+        } else {
+            // invokeAll() hands the results back in submission order, keeping the output deterministic.
+            for (Future<RenderedProvider> provider : renderingPool.invokeAll(renderings)) {
+                providers.add(provider.get());
+            }
+        }
+        return providers;
+    }
+
+    // The generator only works on the models, the elements each file came from are attached here so
+    // Gradle can tell what to reprocess.
+    private static TypeSpec withOriginatingElements(TypeSpec typeSpec, List<? extends Element> elements) {
+        final TypeSpec.Builder builder = typeSpec.toBuilder();
+        for (Element element : elements) {
+            builder.addOriginatingElement(element);
+        }
+        return builder.build();
+    }
+
+    private void reportStats() {
+        messager.printMessage(Diagnostic.Kind.NOTE, stats.toSummary(STATS_SLOWEST_COUNT));
+
+        try {
+            final FileObject report = filer.createResource(StandardLocation.SOURCE_OUTPUT, "", STATS_FILE_NAME);
+            final Writer writer = report.openWriter();
+            try {
+                writer.write(stats.toJson());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error("Error while writing %s. Cause: %s.", STATS_FILE_NAME, e);
+        }
+    }
+
+    private void writeBaselineProfile() {
+        try {
+            final FileObject profile = filer.createResource(StandardLocation.SOURCE_OUTPUT, "", PROFILE_FILE_NAME);
+            final Writer writer = profile.openWriter();
+            try {
+                writer.write(baselineProfile.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error("Error while writing %s. Cause: %s.", PROFILE_FILE_NAME, e);
+        }
     }
 
     private void error(Element e, String message, Object... args) {
@@ -165,7 +572,7 @@ public final class GeneratedProviderProcessor extends AbstractProcessor {
         );
     }
 
-    private boolean isValidClass(TypeElement classElement) throws ClassNotFoundException {
+    private boolean isValidClass(TypeElement classElement) {
 
         /* Req #1: Annotated class has to be public. */
         if (!classElement.getModifiers().contains(Modifier.PUBLIC)) {
@@ -182,184 +589,263 @@ public final class GeneratedProviderProcessor extends AbstractProcessor {
         }
 
         /* Req #3: Annotated class has to be a subclass of ViewModel. */
-        TypeElement currentClass = classElement;
-        while (true) {
-            final TypeMirror superClassType = currentClass.getSuperclass();
-
-            if (superClassType.getKind() == TypeKind.NONE) {
-                // Basis class (java.lang.Object) reached, so exit.
-                error(classElement, "The class %s annotated with @%s must inherit from %s.",
-                        classElement.getQualifiedName().toString(), GeneratedProvider.class.getSimpleName(),
-                        Class.forName(VIEW_MODEL_CLASS_NAME));
-                return false;
-            }
+        if (!isViewModel(classElement.getSuperclass())) {
+            error(classElement, "The class %s annotated with @%s must inherit from %s.",
+                    classElement.getQualifiedName().toString(), GeneratedProvider.class.getSimpleName(),
+                    viewModelElement.getQualifiedName().toString());
+            return false;
+        }
 
-            if (superClassType.toString().equals(VIEW_MODEL_CLASS_NAME)) {
-                // Required super class found. Break the loop so we can return.
-                break;
-            }
+        /* Req #4: There has to be something left to generate. */
+        final GeneratedProvider annotation = classElement.getAnnotation(GeneratedProvider.class);
+        if (!annotation.activity() && !annotation.fragment()) {
+            error(classElement, "The class %s turns off both the activity and the fragment methods of @%s.",
+                    classElement.getQualifiedName().toString(), GeneratedProvider.class.getSimpleName());
+            return false;
+        }
+
+        /* Req #5: A fragment scope needs the fragment methods it applies to. */
+        if (!annotation.fragment() && annotation.scope() != GeneratedProvider.Scope.FRAGMENT) {
+            error(classElement, "The class %s declares the %s scope of @%s but turns off its fragment methods.",
+                    classElement.getQualifiedName().toString(), annotation.scope(),
+                    GeneratedProvider.class.getSimpleName());
+            return false;
+        }
+
+        /* Req #6: So do the shared methods. */
+        if (!annotation.fragment() && annotation.shared()) {
+            error(classElement, "The class %s asks for the shared methods of @%s but turns off its fragment methods.",
+                    classElement.getQualifiedName().toString(), GeneratedProvider.class.getSimpleName());
+            return false;
+        }
 
-            // Moving up in inheritance tree.
-            currentClass = (TypeElement) typeUtils.asElement(superClassType);
+        /* Req #7: Pooled classes have to be resettable, and reusable once cleared. */
+        if (annotation.pool() != 0 && !isValidPool(classElement, annotation.pool())) {
+            return false;
         }
 
         return true;
     }
 
-    private String getPackageName(TypeElement typeElement) throws NoPackageNameException {
-        final PackageElement pkg = elementUtils.getPackageOf(typeElement);
-        if (pkg.isUnnamed()) {
-            throw new NoPackageNameException(typeElement);
+    private boolean isValidPool(TypeElement classElement, int pool) {
+        if (pool < 0) {
+            error(classElement, "The class %s asks for a pool of %d instances.",
+                    classElement.getQualifiedName().toString(), pool);
+            return false;
         }
-        return pkg.getQualifiedName().toString();
-    }
-
-    private TypeSpec generateProvider(TypeElement typeElement)
-            throws ClassNotFoundException, DuplicateMainConstructorException {
 
-        final TypeName typeName = TypeName.get(typeElement.asType());
-        final String genClassName = typeElement.getSimpleName() + PROVIDER_CLASS_SUFFIX;
-        final List<ConstructorParameter> subjectCtorParams = getConstructorParameters(typeElement);
-        final Class viewModelProviderClass = Class.forName(VIEW_MODEL_PROVIDERS_CLASS_NAME);
-
-        final StringBuilder ctorParamNamesCsv = new StringBuilder();
-        for (int i = 0; i < subjectCtorParams.size(); i++) {
-            if (ctorParamNamesCsv.length() > 0) ctorParamNamesCsv.append(", ");
-            ctorParamNamesCsv.append(subjectCtorParams.get(i).getName());
+        // AndroidX ViewModels stay cleared for good, closing whatever gets attached to them afterwards.
+        if (flavor.isAndroidX()) {
+            error(classElement, "The class %s can't be pooled, AndroidX ViewModels can't be reused once cleared.",
+                    classElement.getQualifiedName().toString());
+            return false;
         }
 
-        final ParameterSpec.Builder activityParameterSpecBuilder = ParameterSpec.builder(
-                ClassName.bestGuess(FRAGMENT_ACTIVITY_CLASS_NAME),
-                "activity"
-        );
+        final TypeElement resettableElement = elementUtils.getTypeElement(RESETTABLE_NAME);
+        if (resettableElement == null) {
+            error(classElement, "Couldn't find %s. Have you declared Alfred's runtime artifact as a dependency?",
+                    RESETTABLE_NAME);
+            return false;
+        }
+        if (!typeUtils.isAssignable(classElement.asType(), typeUtils.erasure(resettableElement.asType()))) {
+            error(classElement, "The class %s is pooled but doesn't implement %s.",
+                    classElement.getQualifiedName().toString(), resettableElement.getSimpleName());
+            return false;
+        }
 
-        // Generate `get()` method to be called from activities.
-        final MethodSpec.Builder activityGetBuilder = MethodSpec.methodBuilder("get")
-                .returns(typeName)
-                .addAnnotation(NonNull.class)
-                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                .addParameter(activityParameterSpecBuilder.addAnnotation(NonNull.class).build());
+        return true;
+    }
 
-        for (ParameterSpec parameterSpec : buildParameterList(subjectCtorParams)) {
-            activityGetBuilder.addParameter(parameterSpec);
+    private boolean isViewModel(TypeMirror superClassType) {
+        if (superClassType.getKind() != TypeKind.DECLARED) {
+            // Basis class (java.lang.Object) reached.
+            return false;
         }
 
-        activityGetBuilder.addStatement("return $T\n.of(activity, new $TFactory($L))\n.get($T.class)", viewModelProviderClass, typeElement, ctorParamNamesCsv, typeElement);
-        final MethodSpec activityGet = activityGetBuilder.build();
+        // Annotated classes tend to share a handful of base classes, so remember the ones
+        // we've already resolved instead of asking the type utilities again.
+        final TypeElement superClass = (TypeElement) typeUtils.asElement(superClassType);
+        Boolean resolved = resolvedSupertypes.get(superClass);
+        if (resolved == null) {
+            resolved = typeUtils.isSubtype(typeUtils.erasure(superClassType), viewModelType);
+            resolvedSupertypes.put(superClass, resolved);
+        }
+        return resolved;
+    }
 
-        final ParameterSpec.Builder fragmentParameterSpecBuilder = ParameterSpec.builder(
-                ClassName.bestGuess(FRAGMENT_CLASS_NAME),
-                "fragment"
+    // Leaks are only reported once, when the class' own provider is generated.
+    private AnnotatedViewModel analyze(TypeElement typeElement, boolean reportLeaks)
+            throws NoPackageNameException, DuplicateMainConstructorException {
+        // Ensure the class lives in a named package before going any further.
+        getPackageName(typeElement);
+
+        final GeneratedProvider annotation = typeElement.getAnnotation(GeneratedProvider.class);
+
+        return new AnnotatedViewModel(
+                ClassName.get(typeElement),
+                getConstructorParameters(typeElement, reportLeaks),
+                annotation.suppliers(),
+                annotation.async(),
+                annotation.lazy(),
+                annotation.keyed(),
+                annotation.shared(),
+                annotation.pool(),
+                annotation.activity(),
+                annotation.fragment(),
+                annotation.scope()
         );
-
-        // Generate `get()` method to be called from fragments.
-        final MethodSpec.Builder fragmentGetBuilder = MethodSpec.methodBuilder("get")
-                .returns(typeName)
-                .addAnnotation(NonNull.class)
-                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                .addParameter(fragmentParameterSpecBuilder.addAnnotation(NonNull.class).build());
-
-        fragmentGetBuilder.addParameters(buildParameterList(subjectCtorParams));
-
-        fragmentGetBuilder.addStatement("return $T\n.of(fragment, new $TFactory($L))\n.get($T.class)", viewModelProviderClass, typeElement, ctorParamNamesCsv, typeElement);
-        final MethodSpec fragmentGet = fragmentGetBuilder.build();
-
-        // Define the class using the previously defined specs.
-        return TypeSpec.classBuilder(genClassName)
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .addMethod(activityGet)
-                .addMethod(fragmentGet)
-                .addType(generateFactory(typeElement))
-                .build();
     }
 
-    private TypeSpec generateFactory(TypeElement typeElement)
-            throws ClassNotFoundException, DuplicateMainConstructorException {
+    // Returns null if the screen can't be bound, after printing why.
+    private AnnotatedScreen analyzeScreen(TypeElement screenElement) {
+        final String screenName = screenElement.getQualifiedName().toString();
 
-        final String genClassName = typeElement.getSimpleName() + FACTORY_CLASS_SUFFIX;
-        final List<ConstructorParameter> ctorParams = getConstructorParameters(typeElement);
+        /* Req #1: The binder assigns the screen's fields from its own package. */
+        if (screenElement.getModifiers().contains(Modifier.PRIVATE)) {
+            error(screenElement, "The class %s is private.", screenName);
+            return null;
+        }
+        try {
+            getPackageName(screenElement);
+        } catch (NoPackageNameException e) {
+            error("Error while generating binder for class %s. Cause: %s.", screenElement, e);
+            return null;
+        }
 
-        // Define the fields based on previously queried constructor params.
-        final List<FieldSpec> fieldSpecs = new ArrayList<>();
-        final StringBuilder fieldNamesCsv = new StringBuilder();
-        for (int i = 0; i < ctorParams.size(); i++) {
-            TypeName paramType = TypeName.get(ctorParams.get(i).getType());
-            String paramName = ctorParams.get(i).getName();
+        /* Req #2: Only activities and fragments have a store to bind from. */
+        final boolean fragment;
+        if (isSubtypeOf(screenElement, flavor.getFragment())) {
+            fragment = true;
+        } else if (isSubtypeOf(screenElement, flavor.getFragmentActivity())) {
+            fragment = false;
+        } else {
+            error(screenElement, "The class %s annotated with @%s must inherit from %s or %s.", screenName,
+                    GeneratedBinder.class.getSimpleName(), flavor.getFragmentActivity(), flavor.getFragment());
+            return null;
+        }
 
-            // Type-erasure. Not doing this will break factory-generation for
-            // targets with parameterized type constructor params.
-            if (paramType instanceof ParameterizedTypeName) {
-                paramType = ((ParameterizedTypeName) paramType).rawType;
+        final List<Pair<String, AnnotatedViewModel>> bindings = new ArrayList<>();
+        final Set<String> boundNames = new HashSet<>();
+        final Map<String, TypeName> parameterTypes = new HashMap<>();
+        for (TypeMirror boundType : getBoundTypes(screenElement)) {
+            final TypeElement boundElement = (TypeElement) typeUtils.asElement(boundType);
+            final String boundName = boundElement.getQualifiedName().toString();
+
+            /* Req #3: Each bound class has a provider obtaining it from this kind of screen, once. */
+            final GeneratedProvider annotation = boundElement.getAnnotation(GeneratedProvider.class);
+            if (annotation == null) {
+                error(screenElement, "The class %s binds %s, which isn't annotated with @%s.", screenName,
+                        boundName, GeneratedProvider.class.getSimpleName());
+                return null;
+            }
+            if (fragment ? !annotation.fragment() : !annotation.activity()) {
+                error(screenElement, "The class %s binds %s, which turns off its %s methods.", screenName,
+                        boundName, fragment ? "fragment" : "activity");
+                return null;
+            }
+            if (!boundNames.add(boundName)) {
+                error(screenElement, "The class %s binds %s more than once.", screenName, boundName);
+                return null;
             }
 
-            fieldSpecs.add(
-                    FieldSpec.builder(
-                            paramType,
-                            paramName,
-                            Modifier.PRIVATE,
-                            Modifier.FINAL
-                    ).build()
-            );
+            /* Req #4: ...and a field on the screen to go into. */
+            final String fieldName = getBoundFieldName(screenElement, boundElement);
+            if (fieldName == null) {
+                return null; // Error message printed.
+            }
+
+            final AnnotatedViewModel viewModel;
+            try {
+                viewModel = analyze(boundElement, false);
+            } catch (NoPackageNameException e) {
+                error("Error while generating binder for class %s. Cause: %s.", screenElement, e);
+                return null;
+            } catch (DuplicateMainConstructorException e) {
+                error(
+                        boundElement,
+                        "Only one constructor can be annotated with @%s in a given class.",
+                        Main.class.getSimpleName()
+                );
+                return null;
+            }
+
+            /* Req #5: bind() takes each parameter name once, so same names need the same type. */
+            for (ConstructorParameter ctorParam : viewModel.getConstructorParameters()) {
+                final TypeName previous = parameterTypes.put(ctorParam.getName(), ctorParam.getTypeName());
+                if (previous != null && !previous.equals(ctorParam.getTypeName())) {
+                    error(screenElement, "The class %s binds ViewModels taking a parameter named %s of different "
+                                    + "types, %s and %s. Rename one of them.", screenName, ctorParam.getName(),
+                            previous, ctorParam.getTypeName());
+                    return null;
+                }
+            }
 
-            if (fieldNamesCsv.length() > 0) fieldNamesCsv.append(", ");
-            fieldNamesCsv.append(paramName);
+            bindings.add(new Pair<>(fieldName, viewModel));
         }
 
-        // Define the constructor of the generated class.
-        final MethodSpec.Builder ctorSpecBuilder = MethodSpec.constructorBuilder();
-        for (int i = 0; i < ctorParams.size(); i++) {
-            String paramName = ctorParams.get(i).getName();
+        if (bindings.isEmpty()) {
+            error(screenElement, "The class %s doesn't bind any ViewModel.", screenName);
+            return null;
+        }
 
-            final Class<?> nullabilityClass = ctorParams.get(i).getNullabilityClass();
-            final ParameterSpec.Builder parameterSpecBuilder = ParameterSpec.builder(
-                    TypeName.get(ctorParams.get(i).getType()),
-                    paramName
-            );
+        return new AnnotatedScreen(ClassName.get(screenElement), fragment, bindings);
+    }
 
-            if (nullabilityClass != null) {
-                parameterSpecBuilder.addAnnotation(nullabilityClass);
-            }
+    private boolean isSubtypeOf(TypeElement typeElement, ClassName superClassName) {
+        final TypeElement superElement = elementUtils.getTypeElement(superClassName.toString());
+        return superElement != null
+                && typeUtils.isSubtype(typeUtils.erasure(typeElement.asType()), typeUtils.erasure(superElement.asType()));
+    }
 
-            ctorSpecBuilder.addParameter(parameterSpecBuilder.build());
+    // The classes aren't loaded while processing, so reading them always ends up in the exception.
+    private List<? extends TypeMirror> getBoundTypes(TypeElement screenElement) {
+        try {
+            screenElement.getAnnotation(GeneratedBinder.class).value();
+        } catch (MirroredTypesException e) {
+            return e.getTypeMirrors();
+        }
+        throw new IllegalStateException("Expected the classes bound by " + screenElement + " to be mirrored.");
+    }
 
-            // Create statement to assign parameter value to its appropriate field.
-            ctorSpecBuilder.addStatement(
-                    "this.$L = $L",
-                    paramName,
-                    paramName
-            );
+    // Returns null if there isn't exactly one field to assign the ViewModel to, after printing why.
+    private String getBoundFieldName(TypeElement screenElement, TypeElement boundElement) {
+        final TypeMirror boundType = typeUtils.erasure(boundElement.asType());
+        String fieldName = null;
+        for (Element element : screenElement.getEnclosedElements()) {
+            if (element.getKind() != ElementKind.FIELD
+                    || !typeUtils.isSameType(typeUtils.erasure(element.asType()), boundType)) continue;
+
+            final Set<Modifier> modifiers = element.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+                    || modifiers.contains(Modifier.FINAL)) {
+                error(element, "The field %s can't be bound, it has to be non-private, non-static and non-final.",
+                        element.getSimpleName());
+                return null;
+            }
+            if (fieldName != null) {
+                error(screenElement, "The class %s has more than one %s field to bind.",
+                        screenElement.getQualifiedName(), boundElement.getSimpleName());
+                return null;
+            }
+            fieldName = element.getSimpleName().toString();
         }
-        final MethodSpec ctorSpec = ctorSpecBuilder.build();
 
-        final TypeVariableName typeVariableName = TypeVariableName.get("T", Class.forName(VIEW_MODEL_CLASS_NAME));
-        final ParameterSpec.Builder modelClassParameterSpecBuilder = ParameterSpec.builder(
-                ParameterizedTypeName.get(ClassName.get(Class.class), typeVariableName),
-                "modelClass"
-        );
+        if (fieldName == null) {
+            error(screenElement, "The class %s has no %s field to bind.",
+                    screenElement.getQualifiedName(), boundElement.getSimpleName());
+        }
+        return fieldName;
+    }
 
-        // Define the `create()` method that will be called by ViewModelProviders
-        // to actually instantiate the ViewModel.
-        final MethodSpec createSpec = MethodSpec.methodBuilder("create")
-                .addAnnotation(NonNull.class)
-                .addAnnotation(Override.class)
-                .addModifiers(Modifier.PUBLIC)
-                .addTypeVariable(typeVariableName)
-                .returns(typeVariableName)
-                .addParameter(modelClassParameterSpecBuilder.addAnnotation(NonNull.class).build())
-                .addStatement("return (T) new $T($L)", typeElement, fieldNamesCsv)
-                .build();
-
-        // Define the class using the previously defined specs.
-        return TypeSpec.classBuilder(genClassName)
-                .addSuperinterface(ClassName.bestGuess(VIEW_MODEL_FACTORY_CLASS_NAME))
-                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
-                .addFields(fieldSpecs)
-                .addMethod(ctorSpec)
-                .addMethod(createSpec)
-                .build();
+    private String getPackageName(TypeElement typeElement) throws NoPackageNameException {
+        final PackageElement pkg = elementUtils.getPackageOf(typeElement);
+        if (pkg.isUnnamed()) {
+            throw new NoPackageNameException(typeElement);
+        }
+        return pkg.getQualifiedName().toString();
     }
 
-    private List<ConstructorParameter> getConstructorParameters(TypeElement typeElement)
+    private List<ConstructorParameter> getConstructorParameters(TypeElement typeElement, boolean reportLeaks)
             throws DuplicateMainConstructorException {
         final List<ConstructorParameter> subjectCtorParams = new ArrayList<>();
 
@@ -380,43 +866,54 @@ public final class GeneratedProviderProcessor extends AbstractProcessor {
 
         if (mainCtor != null) {
             for (VariableElement ctorParameter : mainCtor.getParameters()) {
-                Class<?> nullabilityClass = null;
+                ClassName nullabilityClass = null;
 
                 for (AnnotationMirror annotationMirror : ctorParameter.getAnnotationMirrors()) {
                     String name = annotationMirror.getAnnotationType().asElement().getSimpleName().toString();
 
                     if (name.equalsIgnoreCase(NON_NULL_NAME)) {
-                        nullabilityClass = NonNull.class;
+                        nullabilityClass = flavor.getNonNull();
                     } else if (name.equalsIgnoreCase(NULLABLE_NAME)) {
-                        nullabilityClass = Nullable.class;
+                        nullabilityClass = flavor.getNullable();
                     }
                 }
 
-                subjectCtorParams.add(new ConstructorParameter(nullabilityClass, ctorParameter.asType(),
-                        ctorParameter.getSimpleName().toString()));
+                final TypeMirror parameterType = typeUtils.erasure(ctorParameter.asType());
+                subjectCtorParams.add(new ConstructorParameter(nullabilityClass, TypeName.get(ctorParameter.asType()),
+                        ctorParameter.getSimpleName().toString(),
+                        checkLifecycleBound(typeElement, ctorParameter, reportLeaks),
+                        applicationType != null && typeUtils.isAssignable(applicationType, parameterType)));
             }
         }
 
         return subjectCtorParams;
     }
 
-    private List<ParameterSpec> buildParameterList(List<ConstructorParameter> subjectCtorParams) {
-        final List<ParameterSpec> result = new ArrayList<>(subjectCtorParams.size());
+    private boolean checkLifecycleBound(TypeElement typeElement, VariableElement ctorParameter,
+                                        boolean reportLeaks) {
+        if (lifecycleBoundTypes.isEmpty()) return false;
 
-        for (int i = 0; i < subjectCtorParams.size(); i++) {
-            final Class<?> nullabilityClass = subjectCtorParams.get(i).getNullabilityClass();
-            final ParameterSpec.Builder parameterSpecBuilder = ParameterSpec.builder(
-                    TypeName.get(subjectCtorParams.get(i).getType()),
-                    subjectCtorParams.get(i).getName()
-            );
+        final TypeMirror parameterType = typeUtils.erasure(ctorParameter.asType());
+        if (applicationType != null && typeUtils.isAssignable(parameterType, applicationType)) {
+            return false;
+        }
 
-            if (nullabilityClass != null) {
-                parameterSpecBuilder.addAnnotation(nullabilityClass);
+        for (TypeMirror lifecycleBoundType : lifecycleBoundTypes) {
+            if (!typeUtils.isAssignable(parameterType, lifecycleBoundType)) continue;
+
+            if (reportLeaks && leakDiagnosticKind != null) {
+                messager.printMessage(
+                        leakDiagnosticKind,
+                        String.format("%s will outlive its %s parameter %s. Take the Application instead, "
+                                        + "e.g. by extending AndroidViewModel.",
+                                typeElement.getSimpleName(),
+                                typeUtils.asElement(lifecycleBoundType).getSimpleName(),
+                                ctorParameter.getSimpleName()),
+                        ctorParameter
+                );
             }
-
-            result.add(parameterSpecBuilder.build());
+            return true;
         }
-
-        return result;
+        return false;
     }
 }
@@ -0,0 +1,81 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.internal;
+
+import com.squareup.javapoet.ClassName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Everything the code generation needs to know about a single {@code @GeneratedBinder} activity or
+ * fragment: the {@code ViewModel}s it binds, each paired with the name of the field it goes into.
+ */
+public final class AnnotatedScreen {
+
+    private final ClassName className;
+    private final boolean fragment;
+    private final List<Pair<String, AnnotatedViewModel>> bindings;
+    private final Set<String> constructorParameterNames = new HashSet<>();
+
+    public AnnotatedScreen(ClassName className, boolean fragment, List<Pair<String, AnnotatedViewModel>> bindings) {
+        this.className = className;
+        this.fragment = fragment;
+        this.bindings = Collections.unmodifiableList(new ArrayList<>(bindings));
+        for (Pair<String, AnnotatedViewModel> binding : bindings) {
+            for (ConstructorParameter constructorParameter : binding.getRight().getConstructorParameters()) {
+                constructorParameterNames.add(constructorParameter.getName());
+            }
+        }
+    }
+
+    public ClassName getClassName() {
+        return className;
+    }
+
+    public String getPackageName() {
+        return className.packageName();
+    }
+
+    public String getSimpleName() {
+        return className.simpleName();
+    }
+
+    /** Whether the screen is a fragment, rather than an activity. */
+    public boolean isFragment() {
+        return fragment;
+    }
+
+    public List<Pair<String, AnnotatedViewModel>> getBindings() {
+        return bindings;
+    }
+
+    /**
+     * The given name, suffixed with underscores until none of the bound constructors' parameters goes
+     * by it. The binder takes them all as parameters, and its factory keeps them as fields.
+     */
+    public String getFreeName(String name) {
+        String freeName = name;
+        while (constructorParameterNames.contains(freeName)) {
+            freeName += "_";
+        }
+        return freeName;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.internal;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
+import com.squareup.javapoet.ClassName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Everything the code generation needs to know about a single {@code @GeneratedProvider} class,
+ * queried from the element once it has been validated. Only holds names and JavaPoet types, so any
+ * front end can fill it in.
+ */
+public final class AnnotatedViewModel {
+
+    private final ClassName className;
+    private final List<ConstructorParameter> constructorParameters;
+    private final String constructorParameterNamesCsv;
+    private final Set<String> constructorParameterNames = new HashSet<>();
+    private final boolean supplierOverloads;
+    private final boolean asyncMethods;
+    private final boolean lazyMethods;
+    private final boolean keyedMethods;
+    private final boolean sharedMethods;
+    private final int poolCapacity;
+    private final boolean activityMethods;
+    private final boolean fragmentMethods;
+    private final GeneratedProvider.Scope fragmentScope;
+
+    public AnnotatedViewModel(ClassName className, List<ConstructorParameter> constructorParameters,
+                              boolean supplierOverloads, boolean asyncMethods, boolean lazyMethods,
+                              boolean keyedMethods, boolean sharedMethods, int poolCapacity, boolean activityMethods, boolean fragmentMethods,
+                              GeneratedProvider.Scope fragmentScope) {
+        this.className = className;
+        this.constructorParameters = Collections.unmodifiableList(
+                new ArrayList<>(constructorParameters)
+        );
+
+        final StringBuilder namesCsv = new StringBuilder();
+        for (ConstructorParameter constructorParameter : constructorParameters) {
+            if (namesCsv.length() > 0) namesCsv.append(", ");
+            namesCsv.append(constructorParameter.getName());
+            constructorParameterNames.add(constructorParameter.getName());
+        }
+        this.constructorParameterNamesCsv = namesCsv.toString();
+        this.supplierOverloads = supplierOverloads;
+        this.asyncMethods = asyncMethods;
+        this.lazyMethods = lazyMethods;
+        this.keyedMethods = keyedMethods;
+        this.sharedMethods = sharedMethods;
+        this.poolCapacity = poolCapacity;
+        this.activityMethods = activityMethods;
+        this.fragmentMethods = fragmentMethods;
+        this.fragmentScope = fragmentScope;
+    }
+
+    public ClassName getClassName() {
+        return className;
+    }
+
+    public String getPackageName() {
+        return className.packageName();
+    }
+
+    public String getSimpleName() {
+        return className.simpleName();
+    }
+
+    public List<ConstructorParameter> getConstructorParameters() {
+        return constructorParameters;
+    }
+
+    public String getConstructorParameterNamesCsv() {
+        return constructorParameterNamesCsv;
+    }
+
+    /**
+     * The given name, suffixed with underscores until none of the constructor's parameters goes by it.
+     * Generated locals and parameters share their scope with those parameters.
+     */
+    public String getFreeName(String name) {
+        String freeName = name;
+        while (constructorParameterNames.contains(freeName)) {
+            freeName += "_";
+        }
+        return freeName;
+    }
+
+    public boolean hasSupplierOverloads() {
+        return supplierOverloads;
+    }
+
+    public boolean hasLifecycleBoundParameters() {
+        for (ConstructorParameter constructorParameter : constructorParameters) {
+            if (constructorParameter.isLifecycleBound()) return true;
+        }
+        return false;
+    }
+
+    public boolean hasAsyncMethods() {
+        return asyncMethods;
+    }
+
+    public boolean hasLazyMethods() {
+        return lazyMethods;
+    }
+
+    public boolean hasKeyedMethods() {
+        return keyedMethods;
+    }
+
+    /** Whether {@code getShared()} and {@code getFromParent()} are generated. */
+    public boolean hasSharedMethods() {
+        return sharedMethods;
+    }
+
+    public boolean isPooled() {
+        return poolCapacity > 0;
+    }
+
+    /** How many cleared instances are kept for reuse, 0 if the class isn't pooled. */
+    public int getPoolCapacity() {
+        return poolCapacity;
+    }
+
+    public boolean hasActivityMethods() {
+        return activityMethods;
+    }
+
+    public boolean hasFragmentMethods() {
+        return fragmentMethods;
+    }
+
+    public GeneratedProvider.Scope getFragmentScope() {
+        return fragmentScope;
+    }
+}
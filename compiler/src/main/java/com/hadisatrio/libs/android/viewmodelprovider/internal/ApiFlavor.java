@@ -0,0 +1,162 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.internal;
+
+import com.squareup.javapoet.ClassName;
+
+/**
+ * The set of Android types generated code is written against: either the Architecture Components
+ * with the support library, or their AndroidX counterparts.
+ */
+public final class ApiFlavor {
+
+    public static final ApiFlavor SUPPORT = new ApiFlavor(
+            false,
+            "android.arch.lifecycle",
+            "android.support.v4.app",
+            "android.support.annotation",
+            "android.support.v4.os"
+    );
+
+    public static final ApiFlavor ANDROIDX = new ApiFlavor(
+            true,
+            "androidx.lifecycle",
+            "androidx.fragment.app",
+            "androidx.annotation",
+            "androidx.core.os"
+    );
+
+    private final boolean androidX;
+    private final String defaultKey;
+    private final ClassName viewModel;
+    private final ClassName viewModelProvider;
+    private final ClassName viewModelFactory;
+    private final ClassName viewModelStore;
+    private final ClassName viewModelStores;
+    private final ClassName lifecycle;
+    private final ClassName lifecycleObserver;
+    private final ClassName onLifecycleEvent;
+    private final ClassName creationExtras;
+    private final ClassName creationExtrasKey;
+    private final ClassName mutableCreationExtras;
+    private final ClassName fragmentActivity;
+    private final ClassName fragment;
+    private final ClassName nonNull;
+    private final ClassName nullable;
+    private final ClassName traceCompat;
+
+    private ApiFlavor(boolean androidX, String lifecyclePackage, String fragmentPackage,
+                      String annotationPackage, String tracePackage) {
+        this.androidX = androidX;
+        this.defaultKey = lifecyclePackage + ".ViewModelProvider.DefaultKey";
+        this.viewModel = ClassName.get(lifecyclePackage, "ViewModel");
+        this.viewModelProvider = ClassName.get(lifecyclePackage, "ViewModelProvider");
+        this.viewModelFactory = ClassName.get(lifecyclePackage, "ViewModelProvider", "Factory");
+        this.viewModelStore = ClassName.get(lifecyclePackage, "ViewModelStore");
+        this.viewModelStores = ClassName.get(lifecyclePackage, "ViewModelStores");
+        this.lifecycle = ClassName.get(lifecyclePackage, "Lifecycle");
+        this.lifecycleObserver = ClassName.get(lifecyclePackage, "LifecycleObserver");
+        this.onLifecycleEvent = ClassName.get(lifecyclePackage, "OnLifecycleEvent");
+        this.creationExtras = ClassName.get(lifecyclePackage + ".viewmodel", "CreationExtras");
+        this.creationExtrasKey = ClassName.get(lifecyclePackage + ".viewmodel", "CreationExtras", "Key");
+        this.mutableCreationExtras = ClassName.get(lifecyclePackage + ".viewmodel", "MutableCreationExtras");
+        this.fragmentActivity = ClassName.get(fragmentPackage, "FragmentActivity");
+        this.fragment = ClassName.get(fragmentPackage, "Fragment");
+        this.nonNull = ClassName.get(annotationPackage, "NonNull");
+        this.nullable = ClassName.get(annotationPackage, "Nullable");
+        this.traceCompat = ClassName.get(tracePackage, "TraceCompat");
+    }
+
+    /**
+     * AndroidX generation uses stateless factories fed through {@code CreationExtras}, which
+     * don't exist in the Architecture Components. Neither does {@code ViewModelStores} exist in
+     * AndroidX.
+     */
+    public boolean isAndroidX() {
+        return androidX;
+    }
+
+    /** Same prefix ViewModelProvider#get(Class) would've come up with, so both resolve the same instance. */
+    public String getDefaultKey() {
+        return defaultKey;
+    }
+
+    public ClassName getViewModel() {
+        return viewModel;
+    }
+
+    public ClassName getViewModelProvider() {
+        return viewModelProvider;
+    }
+
+    public ClassName getViewModelFactory() {
+        return viewModelFactory;
+    }
+
+    public ClassName getViewModelStore() {
+        return viewModelStore;
+    }
+
+    public ClassName getViewModelStores() {
+        return viewModelStores;
+    }
+
+    public ClassName getLifecycle() {
+        return lifecycle;
+    }
+
+    public ClassName getLifecycleObserver() {
+        return lifecycleObserver;
+    }
+
+    public ClassName getOnLifecycleEvent() {
+        return onLifecycleEvent;
+    }
+
+    public ClassName getCreationExtras() {
+        return creationExtras;
+    }
+
+    public ClassName getCreationExtrasKey() {
+        return creationExtrasKey;
+    }
+
+    public ClassName getMutableCreationExtras() {
+        return mutableCreationExtras;
+    }
+
+    public ClassName getFragmentActivity() {
+        return fragmentActivity;
+    }
+
+    public ClassName getFragment() {
+        return fragment;
+    }
+
+    public ClassName getNonNull() {
+        return nonNull;
+    }
+
+    public ClassName getNullable() {
+        return nullable;
+    }
+
+    /** Checks the API level itself, {@code android.os.Trace} only exists from 18 onwards. */
+    public ClassName getTraceCompat() {
+        return traceCompat;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.internal;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Baseline profile rules for everything generated, in the human-readable format ART's profile
+ * tooling reads from {@code baseline-prof.txt}. Every generated class is listed, but only what runs
+ * each time a screen gets created is marked hot, startup and post-startup: the plain {@code get()}s
+ * and {@code bind()}s, the factories' {@code create()} and constructors, and the static initializers
+ * of the types declaring them. The overloads asked for on top are left to the JIT.
+ */
+public final class BaselineProfile {
+
+    private static final String METHOD_FLAGS = "HSP";
+    private static final ClassName ASYNC_CONSTRUCTION_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "AsyncConstruction");
+
+    private final Set<String> rules = new LinkedHashSet<>();
+
+    /** Adds the given generated type, nested types included. */
+    public synchronized void addType(String packageName, TypeSpec typeSpec) {
+        addType(packageName.isEmpty()
+                ? ClassName.get("", typeSpec.name)
+                : ClassName.get(packageName, typeSpec.name), typeSpec, null);
+    }
+
+    /** Adds the provider generated for the given {@code ViewModel}, and the constructor it calls. */
+    public synchronized void addProvider(AnnotatedViewModel viewModel, TypeSpec typeSpec) {
+        addType(ClassName.get(viewModel.getPackageName(), typeSpec.name), typeSpec, viewModel);
+
+        final StringBuilder descriptor = new StringBuilder("(");
+        for (ConstructorParameter constructorParameter : viewModel.getConstructorParameters()) {
+            descriptor.append(Descriptors.getDescriptor(constructorParameter.getRawTypeName()));
+        }
+        descriptor.append(")V");
+
+        rules.add(Descriptors.getDescriptor(viewModel.getClassName()));
+        rules.add(METHOD_FLAGS + Descriptors.getDescriptor(viewModel.getClassName()) + "-><init>" + descriptor);
+    }
+
+    public synchronized boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder profile = new StringBuilder();
+        for (String rule : rules) {
+            profile.append(rule).append('\n');
+        }
+        return profile.toString();
+    }
+
+    private void addType(ClassName className, TypeSpec typeSpec, AnnotatedViewModel viewModel) {
+        final String owner = Descriptors.getDescriptor(className);
+        rules.add(owner);
+
+        // Only factories get constructed on the way, the other types are static or serve the overloads.
+        final boolean factory = isFactory(typeSpec);
+        boolean hasConstructor = false;
+        boolean hasEntryPoint = false;
+        for (MethodSpec methodSpec : typeSpec.methodSpecs) {
+            hasConstructor |= methodSpec.isConstructor();
+            if (methodSpec.isConstructor() ? !factory : !isEntryPoint(methodSpec, factory, viewModel)) continue;
+            hasEntryPoint |= !methodSpec.isConstructor();
+
+            final StringBuilder descriptor = new StringBuilder("(");
+            for (ParameterSpec parameterSpec : methodSpec.parameters) {
+                descriptor.append(Descriptors.getDescriptor(parameterSpec.type));
+            }
+            descriptor.append(')')
+                    .append(methodSpec.isConstructor() ? "V" : Descriptors.getDescriptor(methodSpec.returnType));
+            rules.add(METHOD_FLAGS + owner + "->" + methodSpec.name + descriptor);
+        }
+
+        // Same rules as javac: a default constructor for classes without any, and a static
+        // initializer for anything static that isn't an inlined constant.
+        if (factory && !hasConstructor && typeSpec.kind == TypeSpec.Kind.CLASS) {
+            rules.add(METHOD_FLAGS + owner + "-><init>()V");
+        }
+        boolean hasStaticInitializer = !typeSpec.staticBlock.isEmpty();
+        for (FieldSpec fieldSpec : typeSpec.fieldSpecs) {
+            final boolean constant = fieldSpec.type.isPrimitive() || fieldSpec.type.equals(TypeName.get(String.class));
+            hasStaticInitializer |= fieldSpec.hasModifier(Modifier.STATIC)
+                    && !fieldSpec.initializer.isEmpty() && !constant;
+        }
+        if (hasEntryPoint && hasStaticInitializer) {
+            rules.add(METHOD_FLAGS + owner + "-><clinit>()V");
+        }
+
+        for (TypeSpec nestedTypeSpec : typeSpec.typeSpecs) {
+            addType(className.nestedClass(nestedTypeSpec.name), nestedTypeSpec, viewModel);
+        }
+    }
+
+    // Asynchronous constructions create too, but only once per request.
+    private static boolean isFactory(TypeSpec typeSpec) {
+        if (typeSpec.superclass instanceof ParameterizedTypeName
+                && ((ParameterizedTypeName) typeSpec.superclass).rawType.equals(ASYNC_CONSTRUCTION_CLASS_NAME)) {
+            return false;
+        }
+        for (MethodSpec methodSpec : typeSpec.methodSpecs) {
+            if (methodSpec.name.equals("create")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The viewModel is only given for its provider, whose get()s are told apart by their parameters.
+    private static boolean isEntryPoint(MethodSpec methodSpec, boolean factory, AnnotatedViewModel viewModel) {
+        if (methodSpec.name.equals("create")) {
+            return factory;
+        }
+        if (methodSpec.name.equals("bind")) {
+            return true;
+        }
+        return viewModel != null && methodSpec.name.equals("get") && isPlainGet(methodSpec, viewModel);
+    }
+
+    // The owner, then the constructor's parameters as they are. Keyed and supplier overloads differ.
+    private static boolean isPlainGet(MethodSpec methodSpec, AnnotatedViewModel viewModel) {
+        final List<ConstructorParameter> constructorParameters = viewModel.getConstructorParameters();
+        if (methodSpec.parameters.size() != constructorParameters.size() + 1) {
+            return false;
+        }
+        for (int i = 0; i < constructorParameters.size(); i++) {
+            if (!Descriptors.getDescriptor(methodSpec.parameters.get(i + 1).type)
+                    .equals(Descriptors.getDescriptor(constructorParameters.get(i).getRawTypeName()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.internal;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.WildcardTypeName;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns {@link AnnotatedViewModel}s straight into the class files of their providers, sparing javac
+ * from parsing and attributing the sources {@link ProviderGenerator} would've written. The classes
+ * behave the same as the ones compiled from those sources. Only the provider and its factory are
+ * covered, see {@link #supports(AnnotatedViewModel)}. There being no such sources, the classes carry
+ * neither a source file nor line numbers.
+ */
+public final class BytecodeGenerator {
+
+    private static final ClassName SUPPLIER_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "Supplier");
+
+    private static final String GENERATED_FACTORY = "com/hadisatrio/libs/android/viewmodelprovider/GeneratedFactory";
+
+    private static final String PROVIDER_CLASS_SUFFIX = "Provider";
+    private static final String FACTORY_CLASS_SUFFIX = "Factory";
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String STRING = "java/lang/String";
+    private static final String CLASS = "java/lang/Class";
+    private static final String RUNTIME_EXCEPTION = "java/lang/RuntimeException";
+    private static final String ILLEGAL_STATE_EXCEPTION = "java/lang/IllegalStateException";
+    private static final String STRING_BUILDER = "java/lang/StringBuilder";
+    private static final String FACTORY_CTOR_DESCRIPTOR = "([L" + OBJECT + ";)V";
+
+    private final ApiFlavor flavor;
+    private final boolean watchRetention;
+    private final boolean monitor;
+    private final boolean trace;
+
+    private final String baseViewModel;
+    private final String viewModelProvider;
+    private final String viewModelFactory;
+    private final String viewModelStore;
+    private final String viewModelStores;
+    private final String fragmentActivity;
+    private final String fragment;
+    private final String nonNull;
+    private final String nullable;
+
+    public BytecodeGenerator(ApiFlavor flavor, boolean watchRetention, boolean monitor, boolean trace) {
+        this.flavor = flavor;
+        this.watchRetention = watchRetention;
+        this.monitor = monitor;
+        this.trace = trace;
+
+        this.baseViewModel = Descriptors.getInternalName(flavor.getViewModel());
+        this.viewModelProvider = Descriptors.getInternalName(flavor.getViewModelProvider());
+        this.viewModelFactory = Descriptors.getInternalName(flavor.getViewModelFactory());
+        this.viewModelStore = Descriptors.getInternalName(flavor.getViewModelStore());
+        this.viewModelStores = Descriptors.getInternalName(flavor.getViewModelStores());
+        this.fragmentActivity = Descriptors.getInternalName(flavor.getFragmentActivity());
+        this.fragment = Descriptors.getInternalName(flavor.getFragment());
+        this.nonNull = Descriptors.getDescriptor(flavor.getNonNull());
+        this.nullable = Descriptors.getDescriptor(flavor.getNullable());
+    }
+
+    /**
+     * Whether the provider of the given {@code ViewModel} can be generated as bytecode. Nested types
+     * other than the factory, instrumentation, pooling and the AndroidX factories are left to the sources.
+     */
+    public boolean supports(AnnotatedViewModel viewModel) {
+        return !flavor.isAndroidX() && !monitor && !trace
+                && !(watchRetention && viewModel.hasLifecycleBoundParameters())
+                && !viewModel.hasAsyncMethods() && !viewModel.hasLazyMethods() && !viewModel.isPooled();
+    }
+
+    /**
+     * Generates the class files of the {@code XxxProvider} class of the given {@code ViewModel},
+     * keyed by their binary names.
+     */
+    public Map<String, byte[]> generateProvider(AnnotatedViewModel viewModel) {
+        if (!supports(viewModel)) {
+            throw new IllegalArgumentException("Can't generate bytecode for " + viewModel.getClassName());
+        }
+
+        final ProviderNames names = new ProviderNames(viewModel, flavor.getDefaultKey());
+        final Map<String, byte[]> classFiles = new LinkedHashMap<>();
+        classFiles.put(names.provider.replace('/', '.'), generateProviderClass(viewModel, names));
+        classFiles.put(names.factory.replace('/', '.'), generateFactoryClass(viewModel, names));
+        return classFiles;
+    }
+
+    private byte[] generateProviderClass(AnnotatedViewModel viewModel, ProviderNames names) {
+        final ClassWriter classWriter = newClassWriter();
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                names.provider, null, OBJECT, null);
+        visitInnerClasses(classWriter, names);
+
+        final FieldVisitor keyVisitor = classWriter.visitField(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "KEY", "L" + STRING + ";", null,
+                names.defaultKey);
+        keyVisitor.visitEnd();
+
+        // javac's default constructor.
+        final MethodVisitor ctorVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        ctorVisitor.visitCode();
+        ctorVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctorVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        ctorVisitor.visitInsn(Opcodes.RETURN);
+        ctorVisitor.visitMaxs(0, 0);
+        ctorVisitor.visitEnd();
+
+        // Same methods, in the same order, as ProviderGenerator.
+        final List<ClassName> owners = new ArrayList<>();
+        if (viewModel.hasActivityMethods()) {
+            owners.add(flavor.getFragmentActivity());
+        }
+        if (viewModel.hasFragmentMethods()) {
+            owners.add(flavor.getFragment());
+        }
+
+        for (ClassName owner : owners) {
+            generateGet(classWriter, viewModel, names, "get", owner, getScope(viewModel, owner), false, false);
+        }
+        if (viewModel.hasKeyedMethods()) {
+            for (ClassName owner : owners) {
+                generateGet(classWriter, viewModel, names, "get", owner, getScope(viewModel, owner), true, false);
+            }
+        }
+
+        if (viewModel.hasSharedMethods()) {
+            generateGet(classWriter, viewModel, names, "getShared", flavor.getFragment(),
+                    GeneratedProvider.Scope.ACTIVITY, false, false);
+            generateGet(classWriter, viewModel, names, "getFromParent", flavor.getFragment(),
+                    GeneratedProvider.Scope.PARENT_FRAGMENT, false, false);
+        }
+
+        if (viewModel.hasSupplierOverloads() && !viewModel.getConstructorParameters().isEmpty()) {
+            for (ClassName owner : owners) {
+                generateGet(classWriter, viewModel, names, "get", owner, getScope(viewModel, owner), false, true);
+            }
+        }
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private void generateGet(ClassWriter classWriter, AnnotatedViewModel viewModel, ProviderNames names,
+                             String methodName, ClassName owner, GeneratedProvider.Scope scope, boolean keyed,
+                             boolean supplied) {
+
+        final List<ConstructorParameter> ctorParams = viewModel.getConstructorParameters();
+
+        // Owner, key and then the constructor's parameters (or suppliers thereof), as in the sources.
+        final List<TypeName> parameterTypes = new ArrayList<>();
+        parameterTypes.add(owner);
+        if (keyed) {
+            parameterTypes.add(ClassName.get(String.class));
+        }
+        for (ConstructorParameter ctorParam : ctorParams) {
+            parameterTypes.add(supplied
+                    ? ParameterizedTypeName.get(SUPPLIER_CLASS_NAME,
+                            WildcardTypeName.subtypeOf(ctorParam.getTypeName().box()))
+                    : ctorParam.getTypeName());
+        }
+
+        final MethodVisitor methodVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+                methodName, getMethodDescriptor(parameterTypes, viewModel.getClassName()),
+                getMethodSignature(parameterTypes, viewModel.getClassName()), null);
+        methodVisitor.visitAnnotation(nonNull, false).visitEnd();
+        methodVisitor.visitParameterAnnotation(0, nonNull, false).visitEnd();
+        if (keyed) {
+            methodVisitor.visitParameterAnnotation(1, nonNull, false).visitEnd();
+        }
+        final int firstArgument = keyed ? 2 : 1;
+        for (int i = 0; i < ctorParams.size(); i++) {
+            final String annotation = supplied ? nonNull : getNullabilityAnnotation(ctorParams.get(i));
+            if (annotation != null) {
+                methodVisitor.visitParameterAnnotation(firstArgument + i, annotation, false).visitEnd();
+            }
+        }
+        methodVisitor.visitCode();
+
+        int nextLocal = 0;
+        final int[] parameterLocals = new int[parameterTypes.size()];
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            parameterLocals[i] = nextLocal;
+            nextLocal += getSize(parameterTypes.get(i));
+        }
+
+        // Resolve the store owner first if it isn't the given one.
+        String storeOwner = Descriptors.getInternalName(owner);
+        int storeOwnerLocal = 0;
+        if (owner.equals(flavor.getFragment()) && scope != GeneratedProvider.Scope.FRAGMENT) {
+            final boolean activity = scope == GeneratedProvider.Scope.ACTIVITY;
+            storeOwner = activity ? fragmentActivity : fragment;
+            storeOwnerLocal = nextLocal++;
+
+            final Label resolved = new Label();
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, fragment,
+                    activity ? "getActivity" : "getParentFragment", "()L" + storeOwner + ";", false);
+            methodVisitor.visitVarInsn(Opcodes.ASTORE, storeOwnerLocal);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, storeOwnerLocal);
+            methodVisitor.visitJumpInsn(Opcodes.IFNONNULL, resolved);
+            methodVisitor.visitTypeInsn(Opcodes.NEW, ILLEGAL_STATE_EXCEPTION);
+            methodVisitor.visitInsn(Opcodes.DUP);
+            methodVisitor.visitTypeInsn(Opcodes.NEW, STRING_BUILDER);
+            methodVisitor.visitInsn(Opcodes.DUP);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, STRING_BUILDER, "<init>", "()V", false);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STRING_BUILDER, "append",
+                    "(L" + OBJECT + ";)L" + STRING_BUILDER + ";", false);
+            methodVisitor.visitLdcInsn(activity
+                    ? " is not attached to an activity."
+                    : " is not nested in another fragment.");
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STRING_BUILDER, "append",
+                    "(L" + STRING + ";)L" + STRING_BUILDER + ";", false);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STRING_BUILDER, "toString",
+                    "()L" + STRING + ";", false);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, ILLEGAL_STATE_EXCEPTION, "<init>",
+                    "(L" + STRING + ";)V", false);
+            methodVisitor.visitInsn(Opcodes.ATHROW);
+            methodVisitor.visitLabel(resolved);
+        }
+
+        // Look in the owner's store first so the factory (or its arguments) is only
+        // allocated when the ViewModel actually needs to be created.
+        final Label tryStart = new Label();
+        final Label tryEnd = new Label();
+        final Label handler = new Label();
+        final Label miss = new Label();
+        methodVisitor.visitTryCatchBlock(tryStart, tryEnd, handler, RUNTIME_EXCEPTION);
+        methodVisitor.visitLabel(tryStart);
+        visitNewProvider(methodVisitor, storeOwner, storeOwnerLocal);
+        methodVisitor.visitFieldInsn(Opcodes.GETSTATIC, names.factory, "LOOKUP", "L" + names.factory + ";");
+        visitProviderGet(methodVisitor, names, keyed);
+        methodVisitor.visitLabel(tryEnd);
+        methodVisitor.visitInsn(Opcodes.ARETURN);
+
+        final int exceptionLocal = nextLocal;
+        methodVisitor.visitLabel(handler);
+        methodVisitor.visitVarInsn(Opcodes.ASTORE, exceptionLocal);
+        methodVisitor.visitFieldInsn(Opcodes.GETSTATIC, names.factory, "LOOKUP", "L" + names.factory + ";");
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, exceptionLocal);
+        methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, names.factory, "isMiss",
+                "(L" + RUNTIME_EXCEPTION + ";)Z", false);
+        methodVisitor.visitJumpInsn(Opcodes.IFNE, miss);
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, exceptionLocal);
+        methodVisitor.visitInsn(Opcodes.ATHROW);
+        methodVisitor.visitLabel(miss);
+
+        visitNewProvider(methodVisitor, storeOwner, storeOwnerLocal);
+        methodVisitor.visitTypeInsn(Opcodes.NEW, names.factory);
+        methodVisitor.visitInsn(Opcodes.DUP);
+        visitInt(methodVisitor, ctorParams.size());
+        methodVisitor.visitTypeInsn(Opcodes.ANEWARRAY, OBJECT);
+        for (int i = 0; i < ctorParams.size(); i++) {
+            final TypeName typeName = ctorParams.get(i).getTypeName();
+            final int local = parameterLocals[firstArgument + i];
+            methodVisitor.visitInsn(Opcodes.DUP);
+            visitInt(methodVisitor, i);
+            if (supplied) {
+                // Each supplier is only called on a store miss.
+                methodVisitor.visitVarInsn(Opcodes.ALOAD, local);
+                methodVisitor.visitMethodInsn(Opcodes.INVOKEINTERFACE,
+                        Descriptors.getInternalName(SUPPLIER_CLASS_NAME), "get", "()L" + OBJECT + ";", true);
+            } else {
+                methodVisitor.visitVarInsn(getType(typeName).getOpcode(Opcodes.ILOAD), local);
+                if (typeName.isPrimitive()) {
+                    final String boxed = getType(typeName.box()).getInternalName();
+                    methodVisitor.visitMethodInsn(Opcodes.INVOKESTATIC, boxed, "valueOf",
+                            "(" + getType(typeName).getDescriptor() + ")L" + boxed + ";", false);
+                }
+            }
+            methodVisitor.visitInsn(Opcodes.AASTORE);
+        }
+        methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, names.factory, "<init>", FACTORY_CTOR_DESCRIPTOR,
+                false);
+        visitProviderGet(methodVisitor, names, keyed);
+        methodVisitor.visitInsn(Opcodes.ARETURN);
+
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
+
+    // Leaves a new ViewModelProvider and the owner's store on the stack, for the factory to follow.
+    private void visitNewProvider(MethodVisitor methodVisitor, String storeOwner, int storeOwnerLocal) {
+        methodVisitor.visitTypeInsn(Opcodes.NEW, viewModelProvider);
+        methodVisitor.visitInsn(Opcodes.DUP);
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, storeOwnerLocal);
+        methodVisitor.visitMethodInsn(Opcodes.INVOKESTATIC, viewModelStores, "of",
+                "(L" + storeOwner + ";)L" + viewModelStore + ";", false);
+    }
+
+    // Expects what visitNewProvider() left followed by the factory on the stack, leaves the ViewModel.
+    private void visitProviderGet(MethodVisitor methodVisitor, ProviderNames names, boolean keyed) {
+        methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, viewModelProvider, "<init>",
+                "(L" + viewModelStore + ";L" + viewModelFactory + ";)V", false);
+        if (keyed) {
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 1);
+        } else {
+            methodVisitor.visitLdcInsn(names.defaultKey);
+        }
+        methodVisitor.visitLdcInsn(Type.getObjectType(names.viewModel));
+        methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, viewModelProvider, "get",
+                "(L" + STRING + ";L" + CLASS + ";)L" + baseViewModel + ";", false);
+        methodVisitor.visitTypeInsn(Opcodes.CHECKCAST, names.viewModel);
+    }
+
+    private byte[] generateFactoryClass(AnnotatedViewModel viewModel, ProviderNames names) {
+        final List<ConstructorParameter> ctorParams = viewModel.getConstructorParameters();
+
+        final ClassWriter classWriter = newClassWriter();
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, names.factory, null,
+                GENERATED_FACTORY, new String[]{viewModelFactory});
+        visitInnerClasses(classWriter, names);
+
+        classWriter.visitField(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "LOOKUP", "L" + names.factory + ";",
+                null, null).visitEnd();
+
+        // The arguments are kept by GeneratedFactory.
+        final MethodVisitor ctorVisitor = classWriter.visitMethod(0, "<init>", FACTORY_CTOR_DESCRIPTOR, null, null);
+        ctorVisitor.visitCode();
+        ctorVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctorVisitor.visitVarInsn(Opcodes.ALOAD, 1);
+        ctorVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, GENERATED_FACTORY, "<init>", FACTORY_CTOR_DESCRIPTOR,
+                false);
+        ctorVisitor.visitInsn(Opcodes.RETURN);
+        ctorVisitor.visitMaxs(0, 0);
+        ctorVisitor.visitEnd();
+
+        // ViewModelProvider only asks its factory when the store has no instance yet,
+        // so the lookup throwing its miss here means "not there".
+        final MethodVisitor createVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "create",
+                "(L" + CLASS + ";)L" + baseViewModel + ";",
+                "<T:L" + baseViewModel + ";>(L" + CLASS + "<TT;>;)TT;", null);
+        createVisitor.visitAnnotation(nonNull, false).visitEnd();
+        createVisitor.visitParameterAnnotation(0, nonNull, false).visitEnd();
+        createVisitor.visitCode();
+        createVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+        createVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, names.factory, "getArguments", "()[L" + OBJECT + ";",
+                false);
+        createVisitor.visitVarInsn(Opcodes.ASTORE, 2);
+        createVisitor.visitTypeInsn(Opcodes.NEW, names.viewModel);
+        createVisitor.visitInsn(Opcodes.DUP);
+        for (int i = 0; i < ctorParams.size(); i++) {
+            final TypeName typeName = ctorParams.get(i).getRawTypeName();
+            final String boxed = getType(typeName.box()).getInternalName();
+            createVisitor.visitVarInsn(Opcodes.ALOAD, 2);
+            visitInt(createVisitor, i);
+            createVisitor.visitInsn(Opcodes.AALOAD);
+            createVisitor.visitTypeInsn(Opcodes.CHECKCAST, boxed);
+            if (typeName.isPrimitive()) {
+                final Type type = getType(typeName);
+                createVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxed, type.getClassName() + "Value",
+                        "()" + type.getDescriptor(), false);
+            }
+        }
+        createVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, names.viewModel, "<init>",
+                names.viewModelCtorDescriptor, false);
+        createVisitor.visitInsn(Opcodes.ARETURN);
+        createVisitor.visitMaxs(0, 0);
+        createVisitor.visitEnd();
+
+        // An argument-less instance refusing to create anything doubles as the lookup.
+        final MethodVisitor staticVisitor = classWriter.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null,
+                null);
+        staticVisitor.visitCode();
+        staticVisitor.visitTypeInsn(Opcodes.NEW, names.factory);
+        staticVisitor.visitInsn(Opcodes.DUP);
+        staticVisitor.visitInsn(Opcodes.ACONST_NULL);
+        staticVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, names.factory, "<init>", FACTORY_CTOR_DESCRIPTOR,
+                false);
+        staticVisitor.visitFieldInsn(Opcodes.PUTSTATIC, names.factory, "LOOKUP", "L" + names.factory + ";");
+        staticVisitor.visitInsn(Opcodes.RETURN);
+        staticVisitor.visitMaxs(0, 0);
+        staticVisitor.visitEnd();
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    // javac lists every nested class a class file refers to, so does this.
+    private void visitInnerClasses(ClassWriter classWriter, ProviderNames names) {
+        classWriter.visitInnerClass(names.factory, names.provider, names.factorySimpleName,
+                Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL);
+        classWriter.visitInnerClass(viewModelFactory, viewModelProvider, flavor.getViewModelFactory().simpleName(),
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE);
+    }
+
+    // Activities only ever have their own store.
+    private GeneratedProvider.Scope getScope(AnnotatedViewModel viewModel, ClassName owner) {
+        return owner.equals(flavor.getFragment()) ? viewModel.getFragmentScope() : GeneratedProvider.Scope.ACTIVITY;
+    }
+
+    private String getNullabilityAnnotation(ConstructorParameter ctorParam) {
+        if (ctorParam.getNullabilityClass() == null) {
+            return null;
+        }
+        return ctorParam.getNullabilityClass().equals(flavor.getNonNull()) ? nonNull : nullable;
+    }
+
+    private static void visitInt(MethodVisitor methodVisitor, int value) {
+        if (value <= 5) {
+            methodVisitor.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            methodVisitor.visitIntInsn(Opcodes.BIPUSH, value);
+        } else {
+            methodVisitor.visitIntInsn(Opcodes.SIPUSH, value);
+        }
+    }
+
+    private static String getMethodDescriptor(List<TypeName> parameterTypes, TypeName returnType) {
+        final StringBuilder descriptor = new StringBuilder("(");
+        for (TypeName parameterType : parameterTypes) {
+            descriptor.append(Descriptors.getDescriptor(parameterType));
+        }
+        return descriptor.append(')').append(Descriptors.getDescriptor(returnType)).toString();
+    }
+
+    // Only methods involving generic types get a signature, as with javac.
+    private static String getMethodSignature(List<TypeName> parameterTypes, TypeName returnType) {
+        final StringBuilder signature = new StringBuilder("(");
+        for (TypeName parameterType : parameterTypes) {
+            signature.append(Descriptors.getSignature(parameterType));
+        }
+        signature.append(')').append(Descriptors.getSignature(returnType));
+        return signature.toString().equals(getMethodDescriptor(parameterTypes, returnType))
+                ? null
+                : signature.toString();
+    }
+
+    private static Type getType(TypeName typeName) {
+        return Type.getType(Descriptors.getDescriptor(typeName));
+    }
+
+    private static int getSize(TypeName typeName) {
+        return getType(typeName).getSize();
+    }
+
+    private static ClassWriter newClassWriter() {
+        return new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // Generated methods never merge two different reference types, and the Android
+                // classes couldn't be loaded into the compiler's JVM to find out anyway.
+                return OBJECT;
+            }
+        };
+    }
+
+    // Internal names of the classes involved in one provider.
+    private static final class ProviderNames {
+
+        final String viewModel;
+        final String provider;
+        final String providerSimpleName;
+        final String factory;
+        final String factorySimpleName;
+        final String viewModelCtorDescriptor;
+        final String defaultKey;
+
+        ProviderNames(AnnotatedViewModel annotatedViewModel, String defaultKeyPrefix) {
+            final ClassName providerClassName = ClassName.get(annotatedViewModel.getPackageName(),
+                    annotatedViewModel.getSimpleName() + PROVIDER_CLASS_SUFFIX);
+            final ClassName factoryClassName = providerClassName.nestedClass(
+                    annotatedViewModel.getSimpleName() + FACTORY_CLASS_SUFFIX);
+
+            this.viewModel = Descriptors.getInternalName(annotatedViewModel.getClassName());
+            this.provider = Descriptors.getInternalName(providerClassName);
+            this.providerSimpleName = providerClassName.simpleName();
+            this.factory = Descriptors.getInternalName(factoryClassName);
+            this.factorySimpleName = factoryClassName.simpleName();
+
+            final List<TypeName> ctorParamTypes = new ArrayList<>();
+            for (ConstructorParameter ctorParam : annotatedViewModel.getConstructorParameters()) {
+                ctorParamTypes.add(ctorParam.getRawTypeName());
+            }
+            this.viewModelCtorDescriptor = getMethodDescriptor(ctorParamTypes, TypeName.VOID);
+            this.defaultKey = defaultKeyPrefix + ":" + annotatedViewModel.getClassName();
+        }
+    }
+}
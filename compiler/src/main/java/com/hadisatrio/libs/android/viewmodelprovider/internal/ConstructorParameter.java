@@ -16,33 +16,62 @@
 
 package com.hadisatrio.libs.android.viewmodelprovider.internal;
 
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
 
-import javax.lang.model.type.TypeMirror;
+public final class ConstructorParameter {
 
-public class ConstructorParameter {
-
-    private final Class<?> nullabilityClass;
-    private final TypeMirror type;
+    private final ClassName nullabilityClass;
+    private final TypeName typeName;
+    private final TypeName rawTypeName;
     private final String name;
+    private final boolean lifecycleBound;
+    private final boolean possiblyApplication;
 
-    public ConstructorParameter(@Nullable Class<?> nullabilityClass, @NonNull TypeMirror type,
-                                @NonNull String name) {
+    public ConstructorParameter(ClassName nullabilityClass, TypeName typeName, String name,
+                                boolean lifecycleBound, boolean possiblyApplication) {
         this.nullabilityClass = nullabilityClass;
-        this.type = type;
+        this.typeName = typeName;
         this.name = name;
+        this.lifecycleBound = lifecycleBound;
+        this.possiblyApplication = possiblyApplication;
+
+        // Type-erasure, for what only deals in raw types: descriptors, bytecode casts and class literals. Generated
+        // sources declare and cast to the full type, raw types there warn as unchecked.
+        if (typeName instanceof ParameterizedTypeName) {
+            this.rawTypeName = ((ParameterizedTypeName) typeName).rawType;
+        } else {
+            this.rawTypeName = typeName;
+        }
     }
 
-    @Nullable public Class<?> getNullabilityClass() {
+    public ClassName getNullabilityClass() {
         return nullabilityClass;
     }
 
-    @NonNull public TypeMirror getType() {
-        return type;
+    public TypeName getTypeName() {
+        return typeName;
+    }
+
+    public TypeName getRawTypeName() {
+        return rawTypeName;
     }
 
-    @NonNull public String getName() {
+    public String getName() {
         return name;
     }
+
+    /**
+     * Whether arguments may be tied to the lifecycle of an activity, fragment or view, which
+     * the {@code ViewModel} outlives.
+     */
+    public boolean isLifecycleBound() {
+        return lifecycleBound;
+    }
+
+    /** Whether the parameter is a {@code Context} which the {@code Application} could be passed as. */
+    public boolean isPossiblyApplication() {
+        return possiblyApplication;
+    }
 }
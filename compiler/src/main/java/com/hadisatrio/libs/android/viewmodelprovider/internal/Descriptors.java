@@ -0,0 +1,122 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.internal;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+
+/**
+ * JVM descriptors and generic signatures of JavaPoet types, for the parts of the processor which
+ * deal with compiled classes rather than sources.
+ */
+final class Descriptors {
+
+    private Descriptors() {
+    }
+
+    // The erased JVM descriptor, e.g. Ljava/util/List; for List<String>.
+    static String getDescriptor(TypeName typeName) {
+        typeName = typeName.withoutAnnotations();
+
+        if (typeName.isPrimitive() || typeName.equals(TypeName.VOID)) {
+            return getPrimitiveDescriptor(typeName);
+        } else if (typeName instanceof ArrayTypeName) {
+            return "[" + getDescriptor(((ArrayTypeName) typeName).componentType);
+        } else if (typeName instanceof ParameterizedTypeName) {
+            return getDescriptor(((ParameterizedTypeName) typeName).rawType);
+        } else if (typeName instanceof TypeVariableName) {
+            final TypeVariableName typeVariableName = (TypeVariableName) typeName;
+            return typeVariableName.bounds.isEmpty()
+                    ? getDescriptor(TypeName.OBJECT)
+                    : getDescriptor(typeVariableName.bounds.get(0));
+        } else if (typeName instanceof WildcardTypeName) {
+            return getDescriptor(((WildcardTypeName) typeName).upperBounds.get(0));
+        }
+
+        return "L" + getInternalName((ClassName) typeName) + ";";
+    }
+
+    // The generic signature, e.g. Ljava/util/List<Ljava/lang/String;>; for List<String>.
+    static String getSignature(TypeName typeName) {
+        typeName = typeName.withoutAnnotations();
+
+        if (typeName.isPrimitive() || typeName.equals(TypeName.VOID)) {
+            return getPrimitiveDescriptor(typeName);
+        } else if (typeName instanceof ArrayTypeName) {
+            return "[" + getSignature(((ArrayTypeName) typeName).componentType);
+        } else if (typeName instanceof ParameterizedTypeName) {
+            final ParameterizedTypeName parameterizedTypeName = (ParameterizedTypeName) typeName;
+            final StringBuilder signature = new StringBuilder("L")
+                    .append(getInternalName(parameterizedTypeName.rawType))
+                    .append('<');
+            for (TypeName typeArgument : parameterizedTypeName.typeArguments) {
+                signature.append(getSignature(typeArgument));
+            }
+            return signature.append(">;").toString();
+        } else if (typeName instanceof TypeVariableName) {
+            return "T" + ((TypeVariableName) typeName).name + ";";
+        } else if (typeName instanceof WildcardTypeName) {
+            final WildcardTypeName wildcardTypeName = (WildcardTypeName) typeName;
+            if (!wildcardTypeName.lowerBounds.isEmpty()) {
+                return "-" + getSignature(wildcardTypeName.lowerBounds.get(0));
+            } else if (wildcardTypeName.upperBounds.get(0).equals(TypeName.OBJECT)) {
+                return "*";
+            }
+            return "+" + getSignature(wildcardTypeName.upperBounds.get(0));
+        }
+
+        return getDescriptor(typeName);
+    }
+
+    // The internal name, e.g. java/util/Map$Entry for Map.Entry.
+    static String getInternalName(ClassName className) {
+        final StringBuilder internalName = new StringBuilder();
+        if (!className.packageName().isEmpty()) {
+            internalName.append(className.packageName().replace('.', '/')).append('/');
+        }
+        for (int i = 0; i < className.simpleNames().size(); i++) {
+            if (i > 0) internalName.append('$');
+            internalName.append(className.simpleNames().get(i));
+        }
+        return internalName.toString();
+    }
+
+    private static String getPrimitiveDescriptor(TypeName typeName) {
+        if (typeName.equals(TypeName.VOID)) {
+            return "V";
+        } else if (typeName.equals(TypeName.BOOLEAN)) {
+            return "Z";
+        } else if (typeName.equals(TypeName.BYTE)) {
+            return "B";
+        } else if (typeName.equals(TypeName.SHORT)) {
+            return "S";
+        } else if (typeName.equals(TypeName.INT)) {
+            return "I";
+        } else if (typeName.equals(TypeName.LONG)) {
+            return "J";
+        } else if (typeName.equals(TypeName.CHAR)) {
+            return "C";
+        } else if (typeName.equals(TypeName.FLOAT)) {
+            return "F";
+        }
+        return "D";
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.internal;
+
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Per-round and per-class timings of the processor's phases, along with how many classes and methods
+ * were generated. A disabled instance doesn't even read the clock, so it can be called
+ * unconditionally. Recording is safe from multiple threads.
+ */
+public final class ProcessingStats {
+
+    public enum Phase {
+        VALIDATION("validation"),
+        ANALYSIS("analysis"),
+        SPEC_BUILDING("specBuilding"),
+        WRITING("writing");
+
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    private final boolean enabled;
+    private final List<Long> roundNanos = new ArrayList<>();
+    private final Map<String, long[]> classNanos = new LinkedHashMap<>();
+    private final Map<String, int[]> footprints = new LinkedHashMap<>();
+
+    public ProcessingStats(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public void recordRound(long start) {
+        if (!enabled) return;
+        final long elapsed = System.nanoTime() - start;
+
+        synchronized (this) {
+            roundNanos.add(elapsed);
+        }
+    }
+
+    public void record(CharSequence className, Phase phase, long start) {
+        if (!enabled) return;
+        final long elapsed = System.nanoTime() - start;
+
+        final String key = className.toString();
+        synchronized (this) {
+            long[] phases = classNanos.get(key);
+            if (phases == null) {
+                phases = new long[Phase.values().length];
+                classNanos.put(key, phases);
+            }
+            phases[phase.ordinal()] += elapsed;
+        }
+    }
+
+    /**
+     * Records the classes and methods declared by a generated type, counting the implicit default
+     * constructors and static initializers javac will add, but not synthetic accessors or bridges.
+     */
+    public void recordFootprint(CharSequence className, TypeSpec typeSpec) {
+        if (!enabled) return;
+
+        final int[] footprint = new int[2];
+        count(typeSpec, footprint);
+        synchronized (this) {
+            footprints.put(className.toString(), footprint);
+        }
+    }
+
+    private static void count(TypeSpec typeSpec, int[] footprint) {
+        footprint[0]++;
+        footprint[1] += typeSpec.methodSpecs.size();
+
+        boolean hasConstructor = false;
+        for (MethodSpec methodSpec : typeSpec.methodSpecs) {
+            hasConstructor |= methodSpec.isConstructor();
+        }
+        if (!hasConstructor && typeSpec.kind == TypeSpec.Kind.CLASS) {
+            footprint[1]++;
+        }
+
+        boolean hasStaticInitializer = !typeSpec.staticBlock.isEmpty();
+        for (FieldSpec fieldSpec : typeSpec.fieldSpecs) {
+            // Primitive and String constants are inlined, anything else is set up in <clinit>.
+            final boolean constant = fieldSpec.type.isPrimitive() || fieldSpec.type.equals(TypeName.get(String.class));
+            hasStaticInitializer |= fieldSpec.hasModifier(Modifier.STATIC)
+                    && !fieldSpec.initializer.isEmpty() && !constant;
+        }
+        if (hasStaticInitializer) {
+            footprint[1]++;
+        }
+
+        for (TypeSpec nestedTypeSpec : typeSpec.typeSpecs) {
+            count(nestedTypeSpec, footprint);
+        }
+    }
+
+    public synchronized String toJson() {
+        final StringBuilder json = new StringBuilder("{\n  \"rounds\": [");
+        for (int i = 0; i < roundNanos.size(); i++) {
+            if (i > 0) json.append(", ");
+            json.append(millis(roundNanos.get(i)));
+        }
+        json.append("],\n  \"totals\": {");
+        final long[] totals = totals();
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) json.append(", ");
+            json.append('"').append(phase.key).append("\": ").append(millis(totals[phase.ordinal()]));
+        }
+        final int[] footprint = footprintTotals();
+        json.append("},\n  \"generated\": {\"classes\": ").append(footprint[0])
+                .append(", \"methods\": ").append(footprint[1]);
+        json.append("},\n  \"classes\": [");
+        boolean first = true;
+        for (Map.Entry<String, long[]> entry : classNanos.entrySet()) {
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    {\"name\": \"").append(entry.getKey()).append('"');
+            for (Phase phase : Phase.values()) {
+                json.append(", \"").append(phase.key).append("\": ").append(millis(entry.getValue()[phase.ordinal()]));
+            }
+            final int[] classFootprint = footprints.get(entry.getKey());
+            if (classFootprint != null) {
+                json.append(", \"generatedClasses\": ").append(classFootprint[0])
+                        .append(", \"generatedMethods\": ").append(classFootprint[1]);
+            }
+            json.append('}');
+        }
+        json.append(first ? "]\n}\n" : "\n  ]\n}\n");
+        return json.toString();
+    }
+
+    public synchronized String toSummary(int slowestCount) {
+        long totalNanos = 0;
+        for (Long nanos : roundNanos) {
+            totalNanos += nanos;
+        }
+        final long[] totals = totals();
+
+        final StringBuilder summary = new StringBuilder(String.format(Locale.US,
+                "Alfred processed %d classes in %s ms over %d rounds (validation %s ms, analysis %s ms, "
+                        + "spec building %s ms, writing %s ms).",
+                classNanos.size(), millis(totalNanos), roundNanos.size(),
+                millis(totals[Phase.VALIDATION.ordinal()]), millis(totals[Phase.ANALYSIS.ordinal()]),
+                millis(totals[Phase.SPEC_BUILDING.ordinal()]), millis(totals[Phase.WRITING.ordinal()])));
+
+        final int[] footprint = footprintTotals();
+        summary.append(String.format(Locale.US, " Generated %d classes with %d methods.",
+                footprint[0], footprint[1]));
+
+        final List<Map.Entry<String, long[]>> slowest = new ArrayList<>(classNanos.entrySet());
+        Collections.sort(slowest, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> left, Map.Entry<String, long[]> right) {
+                final long leftNanos = sum(left.getValue());
+                final long rightNanos = sum(right.getValue());
+                return leftNanos < rightNanos ? 1 : (leftNanos == rightNanos ? 0 : -1);
+            }
+        });
+        for (int i = 0; i < Math.min(slowestCount, slowest.size()); i++) {
+            summary.append(i == 0 ? " Slowest: " : ", ")
+                    .append(slowest.get(i).getKey())
+                    .append(" (").append(millis(sum(slowest.get(i).getValue()))).append(" ms)");
+        }
+        return summary.toString();
+    }
+
+    private long[] totals() {
+        final long[] totals = new long[Phase.values().length];
+        for (long[] phases : classNanos.values()) {
+            for (int i = 0; i < phases.length; i++) {
+                totals[i] += phases[i];
+            }
+        }
+        return totals;
+    }
+
+    private int[] footprintTotals() {
+        final int[] totals = new int[2];
+        for (int[] footprint : footprints.values()) {
+            totals[0] += footprint[0];
+            totals[1] += footprint[1];
+        }
+        return totals;
+    }
+
+    private static long sum(long[] phases) {
+        long sum = 0;
+        for (long nanos : phases) {
+            sum += nanos;
+        }
+        return sum;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.US, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,1226 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider.internal;
+
+import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Turns {@link AnnotatedViewModel}s into the generated sources. It only works on the models, so the
+ * output is the same no matter which front end analyzed the annotated classes, and it is safe to
+ * use from multiple threads.
+ */
+public final class ProviderGenerator {
+
+    // Android types are referred to symbolically, they're never loaded into the compiler's JVM. The
+    // lifecycle, fragment and annotation types depend on the ApiFlavor in use.
+    private static final ClassName HANDLER_CLASS_NAME =
+            ClassName.get("android.os", "Handler");
+    private static final ClassName LOOPER_CLASS_NAME =
+            ClassName.get("android.os", "Looper");
+    private static final ClassName SUPPLIER_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "Supplier");
+    private static final ClassName CALLBACK_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "Callback");
+    private static final ClassName CANCELLABLE_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "Cancellable");
+    private static final ClassName GENERATED_FACTORY_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "GeneratedFactory");
+    private static final ClassName ASYNC_CONSTRUCTION_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "AsyncConstruction");
+    private static final ClassName RETENTION_WATCHER_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "RetentionWatcher");
+    private static final ClassName RETENTION_WATCH_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "RetentionWatcher", "Watch");
+    private static final ClassName LAZY_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "Lazy");
+    private static final ClassName INSTANCE_POOL_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "InstancePool");
+    private static final ClassName MONITOR_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "AlfredMonitor");
+    private static final ClassName MONITOR_PROBE_CLASS_NAME =
+            ClassName.get("com.hadisatrio.libs.android.viewmodelprovider", "AlfredMonitor", "Probe");
+    private static final ClassName APPLICATION_CLASS_NAME =
+            ClassName.get("android.app", "Application");
+
+    private static final String PROVIDER_CLASS_SUFFIX = "Provider";
+    private static final String FACTORY_CLASS_SUFFIX = "Factory";
+    private static final String CONSTRUCTION_CLASS_SUFFIX = "Construction";
+    private static final String SENTINEL_CLASS_NAME = "Sentinel";
+    private static final String SENTINEL_KEY_SUFFIX = ":sentinel";
+    private static final String RETENTION_CLASS_SUFFIX = "Retention";
+    private static final String LAZY_CLASS_SUFFIX = "Lazy";
+    private static final String BINDER_CLASS_SUFFIX = "Binder";
+
+    // Section names longer than this are rejected by android.os.Trace.
+    private static final int MAX_TRACE_SECTION_LENGTH = 127;
+
+    private final ApiFlavor flavor;
+    private final boolean watchRetention;
+    private final boolean monitor;
+    private final boolean trace;
+
+    public ProviderGenerator(ApiFlavor flavor, boolean watchRetention, boolean monitor, boolean trace) {
+        this.flavor = flavor;
+        this.watchRetention = watchRetention;
+        this.monitor = monitor;
+        this.trace = trace;
+    }
+
+    /** Generates the {@code XxxProvider} class of the given {@code ViewModel}, nested types included. */
+    public TypeSpec generateProvider(AnnotatedViewModel viewModel) {
+
+        final TypeName typeName = viewModel.getClassName();
+        final String genClassName = viewModel.getSimpleName() + PROVIDER_CLASS_SUFFIX;
+        final List<ParameterSpec> subjectCtorParamSpecs = buildParameterList(viewModel.getConstructorParameters());
+
+        // A compile-time constant, so ViewModelProvider doesn't have to build it on every call.
+        final FieldSpec keySpec = FieldSpec.builder(String.class, "KEY")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$S", flavor.getDefaultKey() + ":" + viewModel.getClassName())
+                .build();
+
+        // Define the class. The front end registers the annotated class as its sole originating
+        // element so Gradle can process this incrementally (isolating).
+        final TypeSpec.Builder providerBuilder = TypeSpec.classBuilder(genClassName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(keySpec);
+
+        // Public, so the ViewModel can hand itself back once cleared and the counts can be read.
+        if (viewModel.isPooled()) {
+            providerBuilder.addField(FieldSpec.builder(
+                    ParameterizedTypeName.get(INSTANCE_POOL_CLASS_NAME, viewModel.getClassName()), "POOL")
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("new $T<>($S, $L)", INSTANCE_POOL_CLASS_NAME, viewModel.getClassName().toString(),
+                            viewModel.getPoolCapacity())
+                    .build());
+        }
+
+        // Generate `get()` methods to be called from activities and fragments, unless turned off.
+        final CodeBlock defaultKey = getDefaultKey(viewModel);
+        final Map<String, ClassName> owners = new LinkedHashMap<>();
+        if (viewModel.hasActivityMethods()) {
+            owners.put(viewModel.getFreeName("activity"), flavor.getFragmentActivity());
+        }
+        if (viewModel.hasFragmentMethods()) {
+            owners.put(viewModel.getFreeName("fragment"), flavor.getFragment());
+        }
+
+        for (Map.Entry<String, ClassName> owner : owners.entrySet()) {
+            providerBuilder.addMethod(generateGet(viewModel, "get", owner.getValue(), owner.getKey(),
+                    getScope(viewModel, owner.getValue()), subjectCtorParamSpecs, false, defaultKey));
+        }
+
+        // Keyed variants, for keeping several instances of the same ViewModel in one owner.
+        if (viewModel.hasKeyedMethods()) {
+            for (Map.Entry<String, ClassName> owner : owners.entrySet()) {
+                providerBuilder.addMethod(generateGet(viewModel, "get", owner.getValue(), owner.getKey(),
+                        getScope(viewModel, owner.getValue()), subjectCtorParamSpecs, true,
+                        CodeBlock.of("$L", viewModel.getFreeName("key"))));
+            }
+        }
+
+        // Fragments reach the stores of their activity and parent this way, whatever the declared scope.
+        if (viewModel.hasSharedMethods()) {
+            final String fragmentName = viewModel.getFreeName("fragment");
+            providerBuilder.addMethod(generateGet(viewModel, "getShared", flavor.getFragment(), fragmentName,
+                    GeneratedProvider.Scope.ACTIVITY, subjectCtorParamSpecs, false, defaultKey));
+            providerBuilder.addMethod(generateGet(viewModel, "getFromParent", flavor.getFragment(), fragmentName,
+                    GeneratedProvider.Scope.PARENT_FRAGMENT, subjectCtorParamSpecs, false, defaultKey));
+        }
+
+        if (viewModel.hasSupplierOverloads() && !viewModel.getConstructorParameters().isEmpty()) {
+            for (Map.Entry<String, ClassName> owner : owners.entrySet()) {
+                providerBuilder.addMethod(generateSupplierGet(viewModel, defaultKey, owner.getValue(), owner.getKey()));
+            }
+        }
+
+        if (viewModel.hasAsyncMethods()) {
+            for (Map.Entry<String, ClassName> owner : owners.entrySet()) {
+                providerBuilder.addMethod(generateAsyncGet(viewModel, owner.getValue(), owner.getKey()));
+            }
+            providerBuilder.addType(generateConstruction(viewModel));
+        }
+
+        if (viewModel.hasLazyMethods()) {
+            for (Map.Entry<String, ClassName> owner : owners.entrySet()) {
+                providerBuilder.addMethod(generateLazyGet(viewModel, owner.getValue(), owner.getKey(), owners));
+            }
+            providerBuilder.addType(generateLazy(viewModel, owners));
+        }
+
+        if (isWatched(viewModel)) {
+            providerBuilder.addType(generateRetention(viewModel));
+        }
+
+        return providerBuilder.addType(flavor.isAndroidX() ? generateStatelessFactory(viewModel) : generateFactory(viewModel))
+                .build();
+    }
+
+    private MethodSpec generateGet(AnnotatedViewModel viewModel, String methodName, ClassName ownerClassName,
+                                   String ownerName, GeneratedProvider.Scope scope,
+                                   List<ParameterSpec> subjectCtorParamSpecs, boolean keyed, CodeBlock key) {
+
+        final MethodSpec.Builder getBuilder = MethodSpec.methodBuilder(methodName)
+                .returns(viewModel.getClassName())
+                .addAnnotation(flavor.getNonNull())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(ParameterSpec.builder(ownerClassName, ownerName)
+                        .addAnnotation(flavor.getNonNull())
+                        .build());
+
+        // Keys are handed to ViewModelProvider as they are, so they have to be unique within the owner.
+        if (keyed) {
+            getBuilder.addParameter(ParameterSpec.builder(String.class, viewModel.getFreeName("key"))
+                    .addAnnotation(flavor.getNonNull())
+                    .build());
+        }
+
+        getBuilder.addParameters(subjectCtorParamSpecs);
+
+        final String storeOwnerName = addStoreOwnerResolution(getBuilder, viewModel, ownerClassName, ownerName, scope);
+        addGetStatements(getBuilder, storeOwnerName, viewModel, key, !keyed,
+                viewModel.getConstructorParameterNamesCsv());
+        return getBuilder.build();
+    }
+
+    private MethodSpec generateSupplierGet(AnnotatedViewModel viewModel, CodeBlock key,
+                                           ClassName ownerClassName, String ownerName) {
+
+        final MethodSpec.Builder getBuilder = MethodSpec.methodBuilder("get")
+                .returns(viewModel.getClassName())
+                .addAnnotation(flavor.getNonNull())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(ParameterSpec.builder(ownerClassName, ownerName)
+                        .addAnnotation(flavor.getNonNull())
+                        .build());
+
+        // Each argument is wrapped in a supplier which is only called on a store miss.
+        final StringBuilder suppliedArgsCsv = new StringBuilder();
+        for (ConstructorParameter ctorParam : viewModel.getConstructorParameters()) {
+            final TypeName suppliedType = ParameterizedTypeName.get(
+                    SUPPLIER_CLASS_NAME,
+                    WildcardTypeName.subtypeOf(ctorParam.getTypeName().box())
+            );
+            getBuilder.addParameter(ParameterSpec.builder(suppliedType, ctorParam.getName())
+                    .addAnnotation(flavor.getNonNull())
+                    .build());
+
+            if (suppliedArgsCsv.length() > 0) suppliedArgsCsv.append(", ");
+            suppliedArgsCsv.append(ctorParam.getName()).append(".get()");
+        }
+
+        final String storeOwnerName = addStoreOwnerResolution(getBuilder, viewModel, ownerClassName, ownerName,
+                getScope(viewModel, ownerClassName));
+        addGetStatements(getBuilder, storeOwnerName, viewModel, key, true, suppliedArgsCsv.toString());
+        return getBuilder.build();
+    }
+
+    private void addGetStatements(MethodSpec.Builder getBuilder, String ownerName,
+                                  AnnotatedViewModel viewModel, CodeBlock key, boolean defaultKeyed,
+                                  String factoryArgsCsv) {
+
+        final String lookupClassName = getLookupClassName(viewModel);
+        final String factoryClassName = viewModel.getSimpleName() + FACTORY_CLASS_SUFFIX;
+        final String exceptionName = viewModel.getFreeName("e");
+
+        // The factory registers the created ViewModel's arguments with the owner's lifecycle.
+        if (isWatched(viewModel)) {
+            factoryArgsCsv += ", " + ownerName + ".getLifecycle()";
+        }
+        final CodeBlock.Builder factoryArgs = CodeBlock.builder().add("$L", factoryArgsCsv);
+
+        // Last comes whatever a pending getAsync() already built, see getTakenOverIndex().
+        if (takesOver(viewModel, defaultKeyed)) {
+            factoryArgs.add(factoryArgsCsv.isEmpty() ? "" : ", ")
+                    .add("$T.takeOver($L, $L)", ASYNC_CONSTRUCTION_CLASS_NAME, getStore(ownerName), key);
+        }
+
+        // Look in the owner's store first so the factory (or its arguments) is only
+        // allocated when the ViewModel actually needs to be created.
+        getBuilder.beginControlFlow("try");
+        if (monitor) {
+            final String instanceName = viewModel.getFreeName("viewModel");
+            getBuilder.addStatement("final $T $L = $L\n.get($L, $T.class)", viewModel.getClassName(), instanceName,
+                    getLookupProvider(viewModel, ownerName), key, viewModel.getClassName())
+                    .addStatement("$L.MONITOR.hit()", lookupClassName)
+                    .addStatement("return $L", instanceName);
+        } else {
+            getBuilder.addStatement("return $L\n.get($L, $T.class)",
+                    getLookupProvider(viewModel, ownerName), key, viewModel.getClassName());
+        }
+        getBuilder.nextControlFlow("catch ($T $L)", RuntimeException.class, exceptionName)
+                .beginControlFlow("if (!$L.isMiss($L))", getLookup(viewModel), exceptionName)
+                .addStatement("throw $L", exceptionName)
+                .endControlFlow()
+                .endControlFlow();
+        if (monitor) {
+            getBuilder.addStatement("$L.MONITOR.miss()", lookupClassName);
+        }
+
+        if (flavor.isAndroidX()) {
+            final String extrasName = viewModel.getFreeName("extras");
+            getBuilder.addStatement("final $T $L = new $T()",
+                    flavor.getMutableCreationExtras(), extrasName, flavor.getMutableCreationExtras())
+                    .addStatement("$L.set($L.INSTANCE, new $T[] {$L})",
+                            extrasName, factoryClassName, Object.class, factoryArgs.build())
+                    .addStatement("return new $T($L, $L.INSTANCE, $L)\n.get($L, $T.class)",
+                            flavor.getViewModelProvider(), getStore(ownerName), factoryClassName, extrasName,
+                            key, viewModel.getClassName());
+            return;
+        }
+
+        getBuilder.addStatement("return new $T($L, new $L(new $T[] {$L}))\n.get($L, $T.class)",
+                flavor.getViewModelProvider(), getStore(ownerName), factoryClassName, Object.class,
+                factoryArgs.build(), key, viewModel.getClassName());
+    }
+
+    // Constructions are only ever pending under the default key.
+    private static boolean takesOver(AnnotatedViewModel viewModel, boolean defaultKeyed) {
+        return viewModel.hasAsyncMethods() && defaultKeyed;
+    }
+
+    // Where a plain get() leaves what it took over from a pending getAsync() in the factory's arguments.
+    private int getTakenOverIndex(AnnotatedViewModel viewModel) {
+        return viewModel.getConstructorParameters().size() + (isWatched(viewModel) ? 1 : 0);
+    }
+
+    // Hands out the instance a pending getAsync() built, if the get() took one over.
+    private CodeBlock generateTakenOverReturn(AnnotatedViewModel viewModel) {
+        if (!viewModel.hasAsyncMethods()) {
+            return CodeBlock.builder().build();
+        }
+        final int index = getTakenOverIndex(viewModel);
+        return CodeBlock.builder()
+                .beginControlFlow("if (args.length > $L && args[$L] != null)", index, index)
+                .addStatement("return (T) args[$L]", index)
+                .endControlFlow()
+                .build();
+    }
+
+    // Activities only ever have their own store.
+    private GeneratedProvider.Scope getScope(AnnotatedViewModel viewModel, ClassName ownerClassName) {
+        return ownerClassName.equals(flavor.getFragment())
+                ? viewModel.getFragmentScope()
+                : GeneratedProvider.Scope.ACTIVITY;
+    }
+
+    // Returns the name of the store owner to go through, declaring it first if it isn't the given owner.
+    private String addStoreOwnerResolution(MethodSpec.Builder builder, AnnotatedViewModel viewModel,
+                                           ClassName ownerClassName, String ownerName,
+                                           GeneratedProvider.Scope scope) {
+        if (!ownerClassName.equals(flavor.getFragment()) || scope == GeneratedProvider.Scope.FRAGMENT) {
+            return ownerName;
+        }
+
+        final boolean activity = scope == GeneratedProvider.Scope.ACTIVITY;
+        final String storeOwnerName = viewModel.getFreeName(activity ? "hostActivity" : "parentFragment");
+        builder.addStatement("final $T $L = $L.$L()",
+                activity ? flavor.getFragmentActivity() : flavor.getFragment(), storeOwnerName, ownerName,
+                activity ? "getActivity" : "getParentFragment")
+                .beginControlFlow("if ($L == null)", storeOwnerName)
+                .addStatement("throw new $T($L + $S)", IllegalStateException.class, ownerName,
+                        activity ? " is not attached to an activity." : " is not nested in another fragment.")
+                .endControlFlow();
+        return storeOwnerName;
+    }
+
+    private boolean isWatched(AnnotatedViewModel viewModel) {
+        return watchRetention && viewModel.hasLifecycleBoundParameters();
+    }
+
+    // Qualified, a constructor parameter of the same name would hide it.
+    private static CodeBlock getDefaultKey(AnnotatedViewModel viewModel) {
+        return CodeBlock.of("$T.KEY", getProviderClassName(viewModel));
+    }
+
+    private String getLookupClassName(AnnotatedViewModel viewModel) {
+        // Factories double as the lookup, saving a class per ViewModel.
+        return viewModel.getSimpleName() + FACTORY_CLASS_SUFFIX;
+    }
+
+    private CodeBlock getLookupProvider(AnnotatedViewModel viewModel, String ownerName) {
+        if (flavor.isAndroidX()) {
+            // Without extras the factory knows it has nothing to create from.
+            return CodeBlock.of("new $T($L, $L, $T.Empty.INSTANCE)",
+                    flavor.getViewModelProvider(), getStore(ownerName), getLookup(viewModel),
+                    flavor.getCreationExtras());
+        }
+        return CodeBlock.of("new $T($L, $L)", flavor.getViewModelProvider(), getStore(ownerName), getLookup(viewModel));
+    }
+
+    private CodeBlock getLookup(AnnotatedViewModel viewModel) {
+        return CodeBlock.of("$L.$L", getLookupClassName(viewModel), flavor.isAndroidX() ? "INSTANCE" : "LOOKUP");
+    }
+
+    // Straight from the owner: ViewModelProviders.of() would also check the owner is attached on every
+    // call, which getting its store already does.
+    private CodeBlock getStore(String ownerName) {
+        if (flavor.isAndroidX()) {
+            return CodeBlock.of("$L.getViewModelStore()", ownerName);
+        }
+        return CodeBlock.of("$T.of($L)", flavor.getViewModelStores(), ownerName);
+    }
+
+    private MethodSpec generateAsyncGet(AnnotatedViewModel viewModel, ClassName ownerClassName, String ownerName) {
+
+        final String lookupClassName = getLookupClassName(viewModel);
+        final String constructionClassName = viewModel.getSimpleName() + CONSTRUCTION_CLASS_SUFFIX;
+        final String argsCsv = viewModel.getConstructorParameterNamesCsv();
+        final String exceptionName = viewModel.getFreeName("e");
+        final String executorName = viewModel.getFreeName("executor");
+        final String callbackName = viewModel.getFreeName("callback");
+
+        final MethodSpec.Builder getBuilder = MethodSpec.methodBuilder("getAsync")
+                .returns(CANCELLABLE_CLASS_NAME)
+                .addAnnotation(flavor.getNonNull())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(ParameterSpec.builder(ownerClassName, ownerName)
+                        .addAnnotation(flavor.getNonNull())
+                        .build())
+                .addParameter(ParameterSpec.builder(Executor.class, executorName)
+                        .addAnnotation(flavor.getNonNull())
+                        .build())
+                .addParameter(ParameterSpec.builder(
+                        ParameterizedTypeName.get(CALLBACK_CLASS_NAME, WildcardTypeName.supertypeOf(viewModel.getClassName())),
+                        callbackName
+                ).addAnnotation(flavor.getNonNull()).build())
+                .addParameters(buildParameterList(viewModel.getConstructorParameters()));
+
+        final String storeOwnerName = addStoreOwnerResolution(getBuilder, viewModel, ownerClassName, ownerName,
+                getScope(viewModel, ownerClassName));
+
+        // Answer straight away when the store already has an instance.
+        getBuilder.beginControlFlow("try");
+        if (monitor) {
+            final String instanceName = viewModel.getFreeName("viewModel");
+            getBuilder.addStatement("final $T $L = $L\n.get($L, $T.class)", viewModel.getClassName(), instanceName,
+                    getLookupProvider(viewModel, storeOwnerName), getDefaultKey(viewModel), viewModel.getClassName())
+                    .addStatement("$L.MONITOR.hit()", lookupClassName)
+                    .addStatement("$L.onResult($L)", callbackName, instanceName);
+        } else {
+            getBuilder.addStatement("$L.onResult($L\n.get($L, $T.class))", callbackName,
+                    getLookupProvider(viewModel, storeOwnerName), getDefaultKey(viewModel), viewModel.getClassName());
+        }
+        getBuilder.addStatement("return $T.COMPLETED", ASYNC_CONSTRUCTION_CLASS_NAME)
+                .nextControlFlow("catch ($T $L)", RuntimeException.class, exceptionName)
+                .beginControlFlow("if (!$L.isMiss($L))", getLookup(viewModel), exceptionName)
+                .addStatement("throw $L", exceptionName)
+                .endControlFlow()
+                .endControlFlow();
+        if (monitor) {
+            getBuilder.addStatement("$L.MONITOR.miss()", lookupClassName);
+        }
+
+        // Constructions are keyed by the store, which outlives the owner across configuration changes.
+        getBuilder.addStatement("return $T.enqueue(\nnew $L($L$L),\n$L,\n$L)",
+                ASYNC_CONSTRUCTION_CLASS_NAME, constructionClassName, getStore(storeOwnerName),
+                argsCsv.isEmpty() ? "" : ", " + argsCsv, executorName, callbackName);
+
+        return getBuilder.build();
+    }
+
+    private MethodSpec generateLazyGet(AnnotatedViewModel viewModel, ClassName ownerClassName, String ownerName,
+                                       Map<String, ClassName> owners) {
+
+        // The handle takes every kind of owner, only the one at hand is set.
+        final StringBuilder lazyArgsCsv = new StringBuilder();
+        for (String name : owners.keySet()) {
+            if (lazyArgsCsv.length() > 0) lazyArgsCsv.append(", ");
+            lazyArgsCsv.append(name.equals(ownerName) ? ownerName : "null");
+        }
+        if (!viewModel.getConstructorParameters().isEmpty()) {
+            lazyArgsCsv.append(", ").append(viewModel.getConstructorParameterNamesCsv());
+        }
+
+        return MethodSpec.methodBuilder("lazy")
+                .returns(ParameterizedTypeName.get(LAZY_CLASS_NAME, viewModel.getClassName()))
+                .addAnnotation(flavor.getNonNull())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(ParameterSpec.builder(ownerClassName, ownerName)
+                        .addAnnotation(flavor.getNonNull())
+                        .build())
+                .addParameters(buildParameterList(viewModel.getConstructorParameters()))
+                .addStatement("return new $L($L)", viewModel.getSimpleName() + LAZY_CLASS_SUFFIX, lazyArgsCsv)
+                .build();
+    }
+
+    private TypeSpec generateLazy(AnnotatedViewModel viewModel, Map<String, ClassName> owners) {
+
+        final String providerClassName = viewModel.getSimpleName() + PROVIDER_CLASS_SUFFIX;
+        final List<ConstructorParameter> ctorParams = viewModel.getConstructorParameters();
+        final String argsCsv = viewModel.getConstructorParameterNamesCsv();
+
+        final List<FieldSpec> fieldSpecs = new ArrayList<>();
+        final MethodSpec.Builder ctorSpecBuilder = MethodSpec.constructorBuilder();
+        for (Map.Entry<String, ClassName> owner : owners.entrySet()) {
+            fieldSpecs.add(FieldSpec.builder(owner.getValue(), owner.getKey(), Modifier.PRIVATE, Modifier.FINAL)
+                    .build());
+            ctorSpecBuilder.addParameter(owner.getValue(), owner.getKey())
+                    .addStatement("this.$L = $L", owner.getKey(), owner.getKey());
+        }
+        final List<ParameterSpec> ctorParamSpecs = buildParameterList(ctorParams);
+        for (int i = 0; i < ctorParams.size(); i++) {
+            final String paramName = ctorParams.get(i).getName();
+            fieldSpecs.add(FieldSpec.builder(ctorParams.get(i).getTypeName(), paramName,
+                    Modifier.PRIVATE, Modifier.FINAL).build());
+            ctorSpecBuilder.addParameter(ctorParamSpecs.get(i))
+                    .addStatement("this.$L = $L", paramName, paramName);
+        }
+
+        // Goes through the regular get(), so the declared scope and the store lookup still apply.
+        // Qualified, as Lazy's own get() hides the provider's.
+        final MethodSpec.Builder resolveSpecBuilder = MethodSpec.methodBuilder("resolve")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PROTECTED)
+                .returns(viewModel.getClassName());
+        final List<String> ownerNames = new ArrayList<>(owners.keySet());
+        for (int i = 0; i < ownerNames.size() - 1; i++) {
+            resolveSpecBuilder.beginControlFlow("if ($L != null)", ownerNames.get(i))
+                    .addStatement("return $L.get($L$L)", providerClassName, ownerNames.get(i),
+                            argsCsv.isEmpty() ? "" : ", " + argsCsv)
+                    .endControlFlow();
+        }
+        resolveSpecBuilder.addStatement("return $L.get($L$L)", providerClassName,
+                ownerNames.get(ownerNames.size() - 1), argsCsv.isEmpty() ? "" : ", " + argsCsv);
+
+        return TypeSpec.classBuilder(viewModel.getSimpleName() + LAZY_CLASS_SUFFIX)
+                .superclass(ParameterizedTypeName.get(LAZY_CLASS_NAME, viewModel.getClassName()))
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addFields(fieldSpecs)
+                .addMethod(ctorSpecBuilder.build())
+                .addMethod(resolveSpecBuilder.build())
+                .build();
+    }
+
+    private TypeSpec generateConstruction(AnnotatedViewModel viewModel) {
+
+        final ClassName typeName = viewModel.getClassName();
+        final String genClassName = viewModel.getSimpleName() + CONSTRUCTION_CLASS_SUFFIX;
+        final List<ConstructorParameter> ctorParams = viewModel.getConstructorParameters();
+        final ClassName sentinelClassName = ClassName.get(viewModel.getPackageName(),
+                viewModel.getSimpleName() + PROVIDER_CLASS_SUFFIX, genClassName, SENTINEL_CLASS_NAME);
+
+        // Only initialized once the first asynchronous request comes in.
+        final FieldSpec mainThreadSpec = FieldSpec.builder(HANDLER_CLASS_NAME, viewModel.getFreeName("MAIN_THREAD"))
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T($T.getMainLooper())", HANDLER_CLASS_NAME, LOOPER_CLASS_NAME)
+                .build();
+        final FieldSpec storeSpec = FieldSpec.builder(flavor.getViewModelStore(), viewModel.getFreeName("store"),
+                Modifier.PRIVATE, Modifier.FINAL).build();
+        final FieldSpec sentinelSpec = FieldSpec.builder(sentinelClassName, viewModel.getFreeName("sentinel"),
+                Modifier.PRIVATE, Modifier.FINAL).build();
+        final FieldSpec instanceSpec = FieldSpec.builder(typeName, viewModel.getFreeName("instance"),
+                Modifier.PRIVATE).build();
+
+        final MethodSpec.Builder ctorSpecBuilder = MethodSpec.constructorBuilder()
+                .addParameter(flavor.getViewModelStore(), storeSpec.name)
+                .addStatement("super($N, $L)", storeSpec, getDefaultKey(viewModel))
+                .addStatement("this.$N = $N", storeSpec, storeSpec);
+
+        final List<FieldSpec> fieldSpecs = new ArrayList<>();
+        final List<ParameterSpec> ctorParamSpecs = buildParameterList(ctorParams);
+        for (int i = 0; i < ctorParams.size(); i++) {
+            final String paramName = ctorParams.get(i).getName();
+            fieldSpecs.add(FieldSpec.builder(ctorParams.get(i).getTypeName(), paramName,
+                    Modifier.PRIVATE, Modifier.FINAL).build());
+            ctorSpecBuilder.addParameter(ctorParamSpecs.get(i))
+                    .addStatement("this.$L = $L", paramName, paramName);
+        }
+        // Clearing the store clears the sentinel too, which is how we tell the owner is gone for good.
+        ctorSpecBuilder.addStatement("this.$N = new $T($N, this).get($L + $S, $T.class)", sentinelSpec,
+                flavor.getViewModelProvider(), storeSpec, getDefaultKey(viewModel), SENTINEL_KEY_SUFFIX,
+                sentinelClassName);
+
+        final CodeBlock ctorArgs = CodeBlock.of("$L", viewModel.getConstructorParameterNamesCsv());
+        final CodeBlock instanceReturn = CodeBlock.builder()
+                .addStatement("return $L", viewModel.getFreeName("viewModel"))
+                .build();
+        final MethodSpec constructSpec = MethodSpec.methodBuilder("construct")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PROTECTED)
+                .returns(typeName)
+                .addCode(generatePoolAcquisition(viewModel, ""))
+                .addCode(monitor || trace
+                        ? generateInstrumentedCreation(viewModel, ctorArgs, instanceReturn)
+                        : CodeBlock.builder().addStatement("return new $T($L)", typeName, ctorArgs).build())
+                .build();
+
+        // Stores the instance through this very factory, unless the store got one in the meantime.
+        final MethodSpec installSpec = MethodSpec.methodBuilder("install")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PROTECTED)
+                .returns(typeName)
+                .addParameter(typeName, "instance")
+                .addStatement("this.$N = instance", instanceSpec)
+                .addStatement("return new $T($N, this).get($L, $T.class)",
+                        flavor.getViewModelProvider(), storeSpec, getDefaultKey(viewModel), typeName)
+                .build();
+
+        final MethodSpec scopeClearedSpec = MethodSpec.methodBuilder("isScopeCleared")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PROTECTED)
+                .returns(boolean.class)
+                .addStatement("return $N.cleared", sentinelSpec)
+                .build();
+
+        // Cleared the way the store would have, so that onCleared() still runs.
+        final MethodSpec discardSpec = MethodSpec.methodBuilder("discard")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(typeName, "instance")
+                .addStatement("this.$N = instance", instanceSpec)
+                .addStatement("final $T graveyard = new $T()", flavor.getViewModelStore(), flavor.getViewModelStore())
+                .addStatement("new $T(graveyard, this).get($L, $T.class)",
+                        flavor.getViewModelProvider(), getDefaultKey(viewModel), typeName)
+                .addStatement("graveyard.clear()")
+                .build();
+
+        final MethodSpec postSpec = MethodSpec.methodBuilder("postToMainThread")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(Runnable.class, "task")
+                .addStatement("$N.post(task)", mainThreadSpec)
+                .build();
+
+        final TypeVariableName typeVariableName = TypeVariableName.get("T", flavor.getViewModel());
+        final MethodSpec createSpec = MethodSpec.methodBuilder("create")
+                .addAnnotation(flavor.getNonNull())
+                .addAnnotation(Override.class)
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "unchecked")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .addTypeVariable(typeVariableName)
+                .returns(typeVariableName)
+                .addParameter(ParameterSpec.builder(
+                        ParameterizedTypeName.get(ClassName.get(Class.class), typeVariableName),
+                        "modelClass"
+                ).addAnnotation(flavor.getNonNull()).build())
+                .beginControlFlow("if (modelClass == $T.class)", sentinelClassName)
+                .addStatement("return (T) new $T()", sentinelClassName)
+                .endControlFlow()
+                // Only asked for nothing when a get() took over, and that get() failed to store anything.
+                .beginControlFlow("if ($N == null)", instanceSpec)
+                .addStatement("throw new $T($S)", IllegalStateException.class,
+                        "Constructing " + typeName + " failed in the get() which took over.")
+                .endControlFlow()
+                .addStatement("return (T) $N", instanceSpec)
+                .build();
+
+        final TypeSpec sentinelTypeSpec = TypeSpec.classBuilder(SENTINEL_CLASS_NAME)
+                .superclass(flavor.getViewModel())
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(boolean.class, "cleared")
+                .addMethod(MethodSpec.methodBuilder("onCleared")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PROTECTED)
+                        .addStatement("cleared = true")
+                        .build())
+                .build();
+
+        return TypeSpec.classBuilder(genClassName)
+                .superclass(ParameterizedTypeName.get(ASYNC_CONSTRUCTION_CLASS_NAME, typeName))
+                .addSuperinterface(flavor.getViewModelFactory())
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(mainThreadSpec)
+                .addField(storeSpec)
+                .addFields(fieldSpecs)
+                .addField(sentinelSpec)
+                .addField(instanceSpec)
+                .addMethod(ctorSpecBuilder.build())
+                .addMethod(constructSpec)
+                .addMethod(installSpec)
+                .addMethod(scopeClearedSpec)
+                .addMethod(discardSpec)
+                .addMethod(postSpec)
+                .addMethod(createSpec)
+                .addType(sentinelTypeSpec)
+                .build();
+    }
+
+    private TypeSpec generateFactory(AnnotatedViewModel viewModel) {
+
+        final String genClassName = viewModel.getSimpleName() + FACTORY_CLASS_SUFFIX;
+        final ClassName genTypeName = ClassName.get(
+                viewModel.getPackageName(),
+                viewModel.getSimpleName() + PROVIDER_CLASS_SUFFIX,
+                genClassName
+        );
+
+        // Arguments are handed over positionally, cast back to the constructor's parameter types.
+        final CodeBlock.Builder argsCsv = CodeBlock.builder();
+        final List<ConstructorParameter> ctorParams = viewModel.getConstructorParameters();
+        for (int i = 0; i < ctorParams.size(); i++) {
+            if (i > 0) argsCsv.add(", ");
+            argsCsv.add("($T) args[$L]", ctorParams.get(i).getTypeName().box(), i);
+        }
+
+        final MethodSpec ctorSpec = MethodSpec.constructorBuilder()
+                .addParameter(Object[].class, "args")
+                .addStatement("super(args)")
+                .build();
+
+        // Define the `create()` method that will be called by ViewModelProvider
+        // to actually instantiate the ViewModel.
+        final TypeVariableName typeVariableName = TypeVariableName.get("T", flavor.getViewModel());
+        final MethodSpec createSpec = MethodSpec.methodBuilder("create")
+                .addAnnotation(flavor.getNonNull())
+                .addAnnotation(Override.class)
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "unchecked")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .addTypeVariable(typeVariableName)
+                .returns(typeVariableName)
+                .addParameter(ParameterSpec.builder(
+                        ParameterizedTypeName.get(ClassName.get(Class.class), typeVariableName),
+                        "modelClass"
+                ).addAnnotation(flavor.getNonNull()).build())
+                // ViewModelProvider only asks its factory when the store has no instance yet,
+                // so the lookup throwing its miss here means "not there".
+                .addStatement("final $T[] args = getArguments()", Object.class)
+                .addCode(generateTakenOverReturn(viewModel))
+                .addCode(generatePoolAcquisition(viewModel, "(T) "))
+                .addCode(generateCreation(viewModel, argsCsv.build(), true))
+                .build();
+
+        // An argument-less instance refusing to create anything doubles as the lookup.
+        final TypeSpec.Builder factoryBuilder = TypeSpec.classBuilder(genClassName)
+                .superclass(GENERATED_FACTORY_CLASS_NAME)
+                .addSuperinterface(flavor.getViewModelFactory())
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(genTypeName, "LOOKUP")
+                        .addModifiers(Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T(null)", genTypeName)
+                        .build());
+        if (monitor) {
+            factoryBuilder.addField(generateMonitorField(viewModel));
+        }
+        return factoryBuilder.addMethod(ctorSpec)
+                .addMethod(createSpec)
+                .build();
+    }
+
+    // Hands out a pooled instance if there is one, before anything gets constructed.
+    private static CodeBlock generatePoolAcquisition(AnnotatedViewModel viewModel, String cast) {
+        if (!viewModel.isPooled()) {
+            return CodeBlock.builder().build();
+        }
+        return CodeBlock.builder()
+                .addStatement("final $T recycled = $T.POOL.acquire()", viewModel.getClassName(),
+                        getProviderClassName(viewModel))
+                .beginControlFlow("if (recycled != null)")
+                .addStatement("return $Lrecycled", cast)
+                .endControlFlow()
+                .build();
+    }
+
+    private CodeBlock generateCreation(AnnotatedViewModel viewModel, CodeBlock ctorArgs, boolean fromArgsArray) {
+        final String instanceName = viewModel.getFreeName("viewModel");
+        if (!isWatched(viewModel)) {
+            if (monitor || trace) {
+                return generateInstrumentedCreation(viewModel, ctorArgs,
+                        CodeBlock.builder().addStatement("return (T) $L", instanceName).build());
+            }
+            return CodeBlock.builder()
+                    .addStatement("return (T) new $T($L)", viewModel.getClassName(), ctorArgs)
+                    .build();
+        }
+
+        final List<ConstructorParameter> ctorParams = viewModel.getConstructorParameters();
+        final CodeBlock.Builder creation = CodeBlock.builder()
+                .addStatement("final $T watch = $T.watch($L)", RETENTION_WATCH_CLASS_NAME,
+                        RETENTION_WATCHER_CLASS_NAME, instanceName);
+
+        for (int i = 0; i < ctorParams.size(); i++) {
+            final ConstructorParameter ctorParam = ctorParams.get(i);
+            if (!ctorParam.isLifecycleBound()) continue;
+
+            final CodeBlock argument = fromArgsArray
+                    ? CodeBlock.of("args[$L]", i)
+                    : CodeBlock.of("$L", ctorParam.getName());
+
+            // A Context parameter may well have been handed the Application, which is fine to keep.
+            if (ctorParam.isPossiblyApplication()) {
+                creation.beginControlFlow("if (!($L instanceof $T))", argument, APPLICATION_CLASS_NAME)
+                        .addStatement("watch.add($S, $L)", ctorParam.getName(), argument)
+                        .endControlFlow();
+            } else {
+                creation.addStatement("watch.add($S, $L)", ctorParam.getName(), argument);
+            }
+        }
+
+        final CodeBlock lifecycle = fromArgsArray
+                ? CodeBlock.of("(($T) args[$L])", flavor.getLifecycle(), ctorParams.size())
+                : CodeBlock.of("ownerLifecycle");
+        creation.addStatement("$L.addObserver(new $L(watch))", lifecycle,
+                        viewModel.getSimpleName() + RETENTION_CLASS_SUFFIX)
+                .addStatement("return (T) $L", instanceName);
+        return generateInstrumentedCreation(viewModel, ctorArgs, creation.build());
+    }
+
+    // Declares the instance, under the free name for `viewModel`, and follows up with the given
+    // statements, reporting the constructor call to the monitor and wrapping the lot in a trace
+    // section when asked to.
+    private CodeBlock generateInstrumentedCreation(AnnotatedViewModel viewModel, CodeBlock ctorArgs,
+                                                   CodeBlock followUp) {
+        final CodeBlock.Builder creation = CodeBlock.builder();
+        final String instanceName = viewModel.getFreeName("viewModel");
+
+        if (trace) {
+            String sectionName = "Alfred " + viewModel.getClassName().simpleName();
+            if (sectionName.length() > MAX_TRACE_SECTION_LENGTH) {
+                sectionName = sectionName.substring(0, MAX_TRACE_SECTION_LENGTH);
+            }
+            creation.addStatement("$T.beginSection($S)", flavor.getTraceCompat(), sectionName)
+                    .beginControlFlow("try");
+        }
+
+        if (monitor) {
+            final String startName = viewModel.getFreeName("start");
+            creation.addStatement("final long $L = $T.nanoTime()", startName, System.class)
+                    .addStatement("final $T $L = new $T($L)", viewModel.getClassName(), instanceName,
+                            viewModel.getClassName(), ctorArgs)
+                    .addStatement("$L.MONITOR.created($T.nanoTime() - $L)", getLookupClassName(viewModel),
+                            System.class, startName);
+        } else {
+            creation.addStatement("final $T $L = new $T($L)", viewModel.getClassName(), instanceName,
+                    viewModel.getClassName(), ctorArgs);
+        }
+        creation.add(followUp);
+
+        if (trace) {
+            creation.nextControlFlow("finally")
+                    .addStatement("$T.endSection()", flavor.getTraceCompat())
+                    .endControlFlow();
+        }
+
+        return creation.build();
+    }
+
+    private TypeSpec generateRetention(AnnotatedViewModel viewModel) {
+
+        final FieldSpec watchSpec = FieldSpec.builder(RETENTION_WATCH_CLASS_NAME, "watch",
+                Modifier.PRIVATE, Modifier.FINAL).build();
+
+        // Hands the owner's destruction over to the watcher.
+        final MethodSpec onDestroySpec = MethodSpec.methodBuilder("onDestroy")
+                .addAnnotation(AnnotationSpec.builder(flavor.getOnLifecycleEvent())
+                        .addMember("value", "$T.Event.ON_DESTROY", flavor.getLifecycle())
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("$N.ownerDestroyed()", watchSpec)
+                .build();
+
+        // Not private, the lifecycle compiler may want to generate an adapter for it.
+        return TypeSpec.classBuilder(viewModel.getSimpleName() + RETENTION_CLASS_SUFFIX)
+                .addSuperinterface(flavor.getLifecycleObserver())
+                .addModifiers(Modifier.STATIC, Modifier.FINAL)
+                .addField(watchSpec)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addParameter(RETENTION_WATCH_CLASS_NAME, "watch")
+                        .addStatement("this.$N = watch", watchSpec)
+                        .build())
+                .addMethod(onDestroySpec)
+                .build();
+    }
+
+    private TypeSpec generateStatelessFactory(AnnotatedViewModel viewModel) {
+
+        final String genClassName = viewModel.getSimpleName() + FACTORY_CLASS_SUFFIX;
+        final ClassName genTypeName = ClassName.get(
+                viewModel.getPackageName(),
+                viewModel.getSimpleName() + PROVIDER_CLASS_SUFFIX,
+                genClassName
+        );
+        final TypeName argumentsKeyType = ParameterizedTypeName.get(
+                flavor.getCreationExtrasKey(),
+                TypeName.get(Object[].class)
+        );
+
+        // Arguments are handed over positionally, cast back to the constructor's parameter types.
+        final CodeBlock.Builder argsCsv = CodeBlock.builder();
+        final List<ConstructorParameter> ctorParams = viewModel.getConstructorParameters();
+        for (int i = 0; i < ctorParams.size(); i++) {
+            if (i > 0) argsCsv.add(", ");
+            argsCsv.add("($T) args[$L]", ctorParams.get(i).getTypeName().box(), i);
+        }
+
+        final TypeVariableName typeVariableName = TypeVariableName.get("T", flavor.getViewModel());
+        final MethodSpec createSpec = MethodSpec.methodBuilder("create")
+                .addAnnotation(flavor.getNonNull())
+                .addAnnotation(Override.class)
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "unchecked")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .addTypeVariable(typeVariableName)
+                .returns(typeVariableName)
+                .addParameter(ParameterSpec.builder(
+                        ParameterizedTypeName.get(ClassName.get(Class.class), typeVariableName),
+                        "modelClass"
+                ).addAnnotation(flavor.getNonNull()).build())
+                .addParameter(ParameterSpec.builder(flavor.getCreationExtras(), "extras")
+                        .addAnnotation(flavor.getNonNull())
+                        .build())
+                .addStatement("final $T[] args = extras.get(this)", Object.class)
+                // No arguments means we were only asked to look, and the store has nothing.
+                .beginControlFlow("if (args == null)")
+                .addStatement("throw miss()")
+                .endControlFlow()
+                .addCode(generateTakenOverReturn(viewModel))
+                .addCode(generateCreation(viewModel, argsCsv.build(), true))
+                .build();
+
+        // Argument-less as far as GeneratedFactory knows, which makes it a lookup with a miss of its own.
+        final MethodSpec ctorSpec = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .addStatement("super(null)")
+                .build();
+
+        // A single instance serves every call, nothing of the caller's is held onto. It is also the
+        // key its arguments are stored under in the extras, saving a class per ViewModel.
+        final TypeSpec.Builder factoryBuilder = TypeSpec.classBuilder(genClassName)
+                .superclass(GENERATED_FACTORY_CLASS_NAME)
+                .addSuperinterface(flavor.getViewModelFactory())
+                .addSuperinterface(argumentsKeyType)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(genTypeName, "INSTANCE")
+                        .addModifiers(Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T()", genTypeName)
+                        .build());
+        if (monitor) {
+            factoryBuilder.addField(generateMonitorField(viewModel));
+        }
+        return factoryBuilder.addMethod(ctorSpec)
+                .addMethod(createSpec)
+                .build();
+    }
+
+    // Lives next to the lookup, reachable from the provider and its nested classes without accessors.
+    private static FieldSpec generateMonitorField(AnnotatedViewModel viewModel) {
+        return FieldSpec.builder(MONITOR_PROBE_CLASS_NAME, "MONITOR")
+                .addModifiers(Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.probe($S)", MONITOR_CLASS_NAME, viewModel.getClassName().toString())
+                .build();
+    }
+
+    /** Generates a module-wide factory able to create any of the given {@code ViewModel}s. */
+    public TypeSpec generateRegistry(ClassName registryClassName, List<AnnotatedViewModel> viewModels) {
+
+        // Sort by name so the output doesn't depend on the order classes were processed in.
+        final List<AnnotatedViewModel> entries = new ArrayList<>(viewModels);
+        Collections.sort(entries, new Comparator<AnnotatedViewModel>() {
+            @Override
+            public int compare(AnnotatedViewModel left, AnnotatedViewModel right) {
+                return left.getClassName().toString().compareTo(right.getClassName().toString());
+            }
+        });
+
+        // Map each class to its index, which then selects the constructor call in `create()`.
+        final TypeName indicesType = ParameterizedTypeName.get(
+                ClassName.get(Map.class),
+                ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class)),
+                ClassName.get(Integer.class)
+        );
+        final FieldSpec indicesSpec = FieldSpec.builder(indicesType, "INDICES")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T<>($L)", IdentityHashMap.class, entries.size())
+                .build();
+
+        final FieldSpec argsSpec = FieldSpec.builder(Object[].class, "args", Modifier.PRIVATE, Modifier.FINAL)
+                .build();
+
+        // The arguments are untyped, a mismatch is reported with the constructor it was meant for rather than
+        // surfacing as an index or cast failure.
+        final MethodSpec checkSpec = MethodSpec.methodBuilder("checkArguments")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class),
+                        WildcardTypeName.subtypeOf(Object.class)), "modelClass")
+                .addParameter(ArrayTypeName.of(ParameterizedTypeName.get(ClassName.get(Class.class),
+                        WildcardTypeName.subtypeOf(Object.class))), "types")
+                .varargs()
+                .beginControlFlow("if ($N.length != types.length)", argsSpec)
+                .addStatement("throw new $T(modelClass.getName() + $S + types.length + $S + $N.length)",
+                        IllegalArgumentException.class, " takes ", " arguments, got ", argsSpec)
+                .endControlFlow()
+                .beginControlFlow("for (int i = 0; i < types.length; i++)")
+                .beginControlFlow("if ($N[i] != null && !types[i].isInstance($N[i]))", argsSpec, argsSpec)
+                .addStatement("throw new $T($S + i + $S + modelClass.getName() + $S + types[i].getName()\n"
+                                + "+ $S + $N[i].getClass().getName())", IllegalArgumentException.class,
+                        "Argument ", " of ", " must be a ", ", got ", argsSpec)
+                .endControlFlow()
+                .endControlFlow()
+                .build();
+
+        final CodeBlock.Builder indicesInitializer = CodeBlock.builder();
+        final CodeBlock.Builder createSwitch = CodeBlock.builder()
+                .beginControlFlow("switch (index)");
+        for (int i = 0; i < entries.size(); i++) {
+            final AnnotatedViewModel entry = entries.get(i);
+            indicesInitializer.addStatement("$N.put($T.class, $L)", indicesSpec, entry.getClassName(), i);
+
+            // Arguments are handed over positionally, checked against and cast back to the constructor's
+            // parameter types.
+            final CodeBlock.Builder argsCsv = CodeBlock.builder();
+            final CodeBlock.Builder typesCsv = CodeBlock.builder().add("$T.class", entry.getClassName());
+            final List<ConstructorParameter> ctorParams = entry.getConstructorParameters();
+            for (int j = 0; j < ctorParams.size(); j++) {
+                if (j > 0) argsCsv.add(", ");
+                argsCsv.add("($T) args[$L]", ctorParams.get(j).getTypeName().box(), j);
+                typesCsv.add(", $T.class", ctorParams.get(j).getRawTypeName().box());
+            }
+
+            createSwitch.add("case $L: {\n$>", i)
+                    .addStatement("$N($L)", checkSpec, typesCsv.build());
+            if (!entry.isPooled()) {
+                createSwitch.addStatement("return (T) new $T($L)", entry.getClassName(), argsCsv.build())
+                        .add("$<}\n");
+                continue;
+            }
+
+            // Pooled classes are taken from the pool their provider keeps, if it has anything.
+            createSwitch.addStatement("final $T recycled = $T.POOL.acquire()", entry.getClassName(),
+                            getProviderClassName(entry))
+                    .addStatement("return (T) (recycled != null ? recycled : new $T($L))", entry.getClassName(),
+                            argsCsv.build())
+                    .add("$<}\n");
+        }
+        createSwitch.addStatement("default: throw new $T(index)", AssertionError.class)
+                .endControlFlow();
+
+        final MethodSpec ctorSpec = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(ParameterSpec.builder(Object[].class, "args")
+                        .addAnnotation(flavor.getNonNull())
+                        .build())
+                .varargs()
+                .addStatement("this.$N = args", argsSpec)
+                .build();
+
+        final TypeVariableName typeVariableName = TypeVariableName.get("T", flavor.getViewModel());
+        final MethodSpec createSpec = MethodSpec.methodBuilder("create")
+                .addAnnotation(flavor.getNonNull())
+                .addAnnotation(Override.class)
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "unchecked")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .addTypeVariable(typeVariableName)
+                .returns(typeVariableName)
+                .addParameter(ParameterSpec.builder(
+                        ParameterizedTypeName.get(ClassName.get(Class.class), typeVariableName),
+                        "modelClass"
+                ).addAnnotation(flavor.getNonNull()).build())
+                .addStatement("final $T index = $N.get(modelClass)", Integer.class, indicesSpec)
+                .beginControlFlow("if (index == null)")
+                .addStatement("throw new $T($S + modelClass.getName())", IllegalArgumentException.class,
+                        "Unknown ViewModel class ")
+                .endControlFlow()
+                .addCode(createSwitch.build())
+                .build();
+
+        return TypeSpec.classBuilder(registryClassName)
+                .addSuperinterface(flavor.getViewModelFactory())
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(indicesSpec)
+                .addStaticBlock(indicesInitializer.build())
+                .addField(argsSpec)
+                .addMethod(ctorSpec)
+                .addMethod(createSpec)
+                .addMethod(checkSpec)
+                .build();
+    }
+
+    /** Generates the {@code XxxBinder} class of the given screen, obtaining all of its {@code ViewModel}s at once. */
+    public TypeSpec generateBinder(AnnotatedScreen screen) {
+
+        final String factoryClassName = screen.getSimpleName() + FACTORY_CLASS_SUFFIX;
+
+        // Parameters of the same name are taken once, the processor made sure their types agree.
+        final Map<String, ConstructorParameter> bindParams = new LinkedHashMap<>();
+        final Map<String, ConstructorParameter> factoryParams = new LinkedHashMap<>();
+        final List<AnnotatedViewModel> created = new ArrayList<>();
+        for (Pair<String, AnnotatedViewModel> binding : screen.getBindings()) {
+            final AnnotatedViewModel viewModel = binding.getRight();
+            final boolean byBinder = isCreatedByBinder(screen, viewModel);
+            for (ConstructorParameter ctorParam : viewModel.getConstructorParameters()) {
+                if (!bindParams.containsKey(ctorParam.getName())) {
+                    bindParams.put(ctorParam.getName(), ctorParam);
+                }
+                if (byBinder && !factoryParams.containsKey(ctorParam.getName())) {
+                    factoryParams.put(ctorParam.getName(), ctorParam);
+                }
+            }
+            if (byBinder) {
+                created.add(viewModel);
+            }
+        }
+
+        final String screenName = screen.getFreeName("screen");
+        final String providerName = screen.getFreeName("provider");
+        final MethodSpec.Builder bindBuilder = MethodSpec.methodBuilder("bind")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(ParameterSpec.builder(screen.getClassName(), screenName)
+                        .addAnnotation(flavor.getNonNull())
+                        .build())
+                .addParameters(buildParameterList(new ArrayList<>(bindParams.values())));
+
+        // The one provider, handing the one factory every ViewModel the screen's store doesn't have yet.
+        if (!created.isEmpty()) {
+            bindBuilder.addStatement("final $T $L = new $T($L, new $L($L))", flavor.getViewModelProvider(),
+                    providerName, flavor.getViewModelProvider(), getStore(screenName), factoryClassName,
+                    joinNames(factoryParams.keySet()));
+        }
+
+        for (Pair<String, AnnotatedViewModel> binding : screen.getBindings()) {
+            final AnnotatedViewModel viewModel = binding.getRight();
+            if (created.contains(viewModel)) {
+                bindBuilder.addStatement("$L.$L = $L.get($T.KEY, $T.class)", screenName, binding.getLeft(),
+                        providerName, getProviderClassName(viewModel), viewModel.getClassName());
+            } else {
+                final List<String> argNames = new ArrayList<>();
+                argNames.add(screenName);
+                for (ConstructorParameter ctorParam : viewModel.getConstructorParameters()) {
+                    argNames.add(ctorParam.getName());
+                }
+                bindBuilder.addStatement("$L.$L = $T.get($L)", screenName, binding.getLeft(),
+                        getProviderClassName(viewModel), joinNames(argNames));
+            }
+        }
+
+        final TypeSpec.Builder binderBuilder = TypeSpec.classBuilder(screen.getSimpleName() + BINDER_CLASS_SUFFIX)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(bindBuilder.build());
+        if (!created.isEmpty()) {
+            binderBuilder.addType(generateScreenFactory(screen, factoryClassName, factoryParams.values(), created));
+        }
+        return binderBuilder.build();
+    }
+
+    // Instrumented and watched classes, and those kept in another store, go through their provider's get().
+    private boolean isCreatedByBinder(AnnotatedScreen screen, AnnotatedViewModel viewModel) {
+        return !monitor && !trace && !isWatched(viewModel)
+                && (!screen.isFragment() || viewModel.getFragmentScope() == GeneratedProvider.Scope.FRAGMENT);
+    }
+
+    private TypeSpec generateScreenFactory(AnnotatedScreen screen, String factoryClassName,
+                                           Collection<ConstructorParameter> ctorParams,
+                                           List<AnnotatedViewModel> viewModels) {
+
+        // The fields carry the constructors' parameter names, which create()'s own parameter would hide.
+        final String modelClassName = screen.getFreeName("modelClass");
+
+        final MethodSpec.Builder ctorSpecBuilder = MethodSpec.constructorBuilder()
+                .addParameters(buildParameterList(new ArrayList<>(ctorParams)));
+        final List<FieldSpec> fieldSpecs = new ArrayList<>(ctorParams.size());
+        for (ConstructorParameter ctorParam : ctorParams) {
+            fieldSpecs.add(FieldSpec.builder(ctorParam.getTypeName(), ctorParam.getName(),
+                    Modifier.PRIVATE, Modifier.FINAL).build());
+            ctorSpecBuilder.addStatement("this.$L = $L", ctorParam.getName(), ctorParam.getName());
+        }
+
+        final TypeVariableName typeVariableName = TypeVariableName.get("T", flavor.getViewModel());
+        final MethodSpec.Builder createSpecBuilder = MethodSpec.methodBuilder("create")
+                .addAnnotation(flavor.getNonNull())
+                .addAnnotation(Override.class)
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "unchecked")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .addTypeVariable(typeVariableName)
+                .returns(typeVariableName)
+                .addParameter(ParameterSpec.builder(
+                        ParameterizedTypeName.get(ClassName.get(Class.class), typeVariableName),
+                        modelClassName
+                ).addAnnotation(flavor.getNonNull()).build());
+        for (AnnotatedViewModel viewModel : viewModels) {
+            createSpecBuilder.beginControlFlow("if ($L == $T.class)", modelClassName, viewModel.getClassName())
+                    .addCode(generatePoolAcquisition(viewModel, "(T) "))
+                    .addCode(generateCreation(viewModel,
+                            CodeBlock.of("$L", viewModel.getConstructorParameterNamesCsv()), false))
+                    .endControlFlow();
+        }
+        createSpecBuilder.addStatement("throw new $T($S + $L.getName())", IllegalArgumentException.class,
+                "Unknown ViewModel class ", modelClassName);
+
+        return TypeSpec.classBuilder(factoryClassName)
+                .addSuperinterface(flavor.getViewModelFactory())
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addFields(fieldSpecs)
+                .addMethod(ctorSpecBuilder.build())
+                .addMethod(createSpecBuilder.build())
+                .build();
+    }
+
+    private static ClassName getProviderClassName(AnnotatedViewModel viewModel) {
+        return ClassName.get(viewModel.getPackageName(), viewModel.getSimpleName() + PROVIDER_CLASS_SUFFIX);
+    }
+
+    private static String joinNames(Collection<String> names) {
+        final StringBuilder namesCsv = new StringBuilder();
+        for (String name : names) {
+            if (namesCsv.length() > 0) namesCsv.append(", ");
+            namesCsv.append(name);
+        }
+        return namesCsv.toString();
+    }
+
+    private List<ParameterSpec> buildParameterList(List<ConstructorParameter> subjectCtorParams) {
+        final List<ParameterSpec> result = new ArrayList<>(subjectCtorParams.size());
+
+        for (int i = 0; i < subjectCtorParams.size(); i++) {
+            final ClassName nullabilityClass = subjectCtorParams.get(i).getNullabilityClass();
+            final ParameterSpec.Builder parameterSpecBuilder = ParameterSpec.builder(
+                    subjectCtorParams.get(i).getTypeName(),
+                    subjectCtorParams.get(i).getName()
+            );
+
+            if (nullabilityClass != null) {
+                parameterSpecBuilder.addAnnotation(nullabilityClass);
+            }
+
+            result.add(parameterSpecBuilder.build());
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.hadisatrio.libs.android.viewmodelprovider.internal;
+
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.JavaFileObject;
+
+/**
+ * A generated source, already rendered to text so that writing it through the {@link Filer}
+ * is all that's left to do. Writes exactly what {@link JavaFile#writeTo(Filer)} would, or the
+ * class files compiled from it when given those instead.
+ */
+public final class RenderedProvider {
+
+    private final String packageName;
+    private final TypeSpec typeSpec;
+    private final String qualifiedName;
+    private final List<Element> originatingElements;
+    private final String source;
+    private final Map<String, byte[]> classFiles;
+
+    public RenderedProvider(JavaFile javaFile) {
+        this.packageName = javaFile.packageName;
+        this.typeSpec = javaFile.typeSpec;
+        this.qualifiedName = javaFile.packageName.isEmpty()
+                ? javaFile.typeSpec.name
+                : javaFile.packageName + "." + javaFile.typeSpec.name;
+        this.originatingElements = javaFile.typeSpec.originatingElements;
+        this.source = javaFile.toString();
+        this.classFiles = null;
+    }
+
+    /** Writes the given class files, keyed by their binary names, in place of the source. */
+    public RenderedProvider(JavaFile javaFile, Map<String, byte[]> classFiles) {
+        this.packageName = javaFile.packageName;
+        this.typeSpec = javaFile.typeSpec;
+        this.qualifiedName = null;
+        this.originatingElements = javaFile.typeSpec.originatingElements;
+        this.source = null;
+        this.classFiles = classFiles;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public TypeSpec getTypeSpec() {
+        return typeSpec;
+    }
+
+    public void writeTo(Filer filer) throws IOException {
+        if (classFiles != null) {
+            writeClassFilesTo(filer);
+            return;
+        }
+
+        final JavaFileObject sourceFile = filer.createSourceFile(
+                qualifiedName,
+                originatingElements.toArray(new Element[originatingElements.size()])
+        );
+        final Writer writer = sourceFile.openWriter();
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeClassFilesTo(Filer filer) throws IOException {
+        final Element[] elements = originatingElements.toArray(new Element[originatingElements.size()]);
+        for (Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+            final OutputStream output = filer.createClassFile(classFile.getKey(), elements).openOutputStream();
+            try {
+                output.write(classFile.getValue());
+            } finally {
+                output.close();
+            }
+        }
+    }
+}
@@ -17,7 +17,7 @@
 package com.hadisatrio.apps.android.alfreddemo;
 
 import android.arch.lifecycle.ViewModel;
-import android.content.Context;
+import android.app.Application;
 
 import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
 import com.hadisatrio.libs.android.viewmodelprovider.Main;
@@ -25,21 +25,21 @@ import com.hadisatrio.libs.android.viewmodelprovider.Main;
 import java.util.Collections;
 import java.util.List;
 
-@GeneratedProvider
+@GeneratedProvider(suppliers = true, async = true, lazy = true)
 public final class AnotherDopeViewModel extends ViewModel {
 
-    private final Context context;
+    private final Application application;
     private final Long fucksGiven;
     private final String whatNot;
     private final List<Integer> someNumbers;
 
-    public AnotherDopeViewModel(Context context, Long fucksGiven) {
-        this(context, fucksGiven, "", Collections.<Integer>emptyList());
+    public AnotherDopeViewModel(Application application, Long fucksGiven) {
+        this(application, fucksGiven, "", Collections.<Integer>emptyList());
     }
 
     @Main
-    public AnotherDopeViewModel(Context context, Long fucksGiven, String whatNot, List<Integer> someNumbers) {
-        this.context = context;
+    public AnotherDopeViewModel(Application application, Long fucksGiven, String whatNot, List<Integer> someNumbers) {
+        this.application = application;
         this.fucksGiven = fucksGiven;
         this.whatNot = whatNot;
         this.someNumbers = someNumbers;
@@ -17,7 +17,7 @@
 package com.hadisatrio.apps.android.alfreddemo;
 
 import android.arch.lifecycle.ViewModel;
-import android.content.Context;
+import android.app.Application;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
@@ -26,11 +26,11 @@ import com.hadisatrio.libs.android.viewmodelprovider.GeneratedProvider;
 @GeneratedProvider
 public final class DopeViewModel extends ViewModel {
 
-    private final Context context;
+    private final Application application;
     private final Long fucksGiven;
 
-    public DopeViewModel(@NonNull Context context, @Nullable Long fucksGiven) {
-        this.context = context;
+    public DopeViewModel(@NonNull Application application, @Nullable Long fucksGiven) {
+        this.application = application;
         this.fucksGiven = fucksGiven;
     }
 }
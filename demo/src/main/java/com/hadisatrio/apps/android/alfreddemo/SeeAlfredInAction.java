@@ -19,13 +19,17 @@ package com.hadisatrio.apps.android.alfreddemo;
 import android.arch.lifecycle.ViewModelProviders;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+
+import com.hadisatrio.libs.android.viewmodelprovider.Lazy;
+import com.hadisatrio.libs.android.viewmodelprovider.RetentionWatcher;
 
 import java.util.Arrays;
 
 public final class SeeAlfredInAction extends AppCompatActivity {
 
     private DopeViewModel dopeViewModel;
-    private AnotherDopeViewModel anotherDopeViewModel;
+    private Lazy<AnotherDopeViewModel> anotherDopeViewModel;
     private LameViewModel lameViewModel;
     private EvenLamerViewModel evenLamerViewModel;
 
@@ -35,9 +39,18 @@ public final class SeeAlfredInAction extends AppCompatActivity {
 
         setContentView(R.layout.activity_see_alfred_in_action);
 
-        // These are dope...
-        dopeViewModel = DopeViewModelProvider.get(this, this, 0L);
-        anotherDopeViewModel = AnotherDopeViewModelProvider.get(this, this, 0L, "", Arrays.asList(1, 2, 3));
+        // Debug builds watch for arguments outliving this activity, have a look at Logcat for them.
+        RetentionWatcher.setListener(new RetentionWatcher.Listener() {
+            @Override
+            public void onRetained(Class<?> viewModelClass, String parameterName, Object argument) {
+                Log.w("Alfred", viewModelClass.getName() + " is retaining " + argument + " (parameter "
+                        + parameterName + ") after its owner was destroyed.");
+            }
+        });
+
+        // These are dope, the second one isn't even created until it's needed...
+        dopeViewModel = DopeViewModelProvider.get(this, getApplication(), 0L);
+        anotherDopeViewModel = AnotherDopeViewModelProvider.lazy(this, getApplication(), 0L, "", Arrays.asList(1, 2, 3));
 
         // ...this is lame..
         lameViewModel = ViewModelProviders.of(this, new CustomViewModelFactory(this, 0L)).get(LameViewModel.class);
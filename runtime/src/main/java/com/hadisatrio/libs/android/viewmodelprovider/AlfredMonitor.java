@@ -0,0 +1,170 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts what generated providers do for each {@code ViewModel}: lookups answered from the store,
+ * lookups which had to create, and how long the constructor took. Generated providers only call
+ * into this when built with {@code alfred.monitor} enabled.
+ */
+public final class AlfredMonitor {
+
+    /**
+     * Told about every lookup and creation, e.g. to forward them to an analytics pipeline. Called
+     * on whichever thread did the lookup or creation, so keep it cheap.
+     */
+    public interface Listener {
+
+        void onLookup(Probe probe, boolean hit);
+
+        void onCreated(Probe probe, long durationNanos);
+    }
+
+    /** Bucket {@code i} counts durations below {@code 2^i} microseconds, the last one everything above. */
+    public static final int DURATION_BUCKETS = 24;
+
+    private static final List<Probe> PROBES = new CopyOnWriteArrayList<>();
+
+    private static volatile Listener listener;
+
+    private AlfredMonitor() {
+    }
+
+    /** Sets who gets told about lookups and creations, or nobody if {@code null}. */
+    public static void setListener(Listener listener) {
+        AlfredMonitor.listener = listener;
+    }
+
+    /** Creates the probe a generated provider reports to. Called once per class, when it's loaded. */
+    public static Probe probe(String viewModelName) {
+        final Probe probe = new Probe(viewModelName);
+        PROBES.add(probe);
+        return probe;
+    }
+
+    /** Returns the probes of every provider loaded so far. */
+    public static List<Probe> getProbes() {
+        return new ArrayList<>(PROBES);
+    }
+
+    /** Clears the counts of every probe, e.g. between benchmark iterations. */
+    public static void reset() {
+        for (Probe probe : PROBES) {
+            probe.reset();
+        }
+    }
+
+    /** The counts of a single {@code ViewModel} class. */
+    public static final class Probe {
+
+        private final String viewModelName;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong creations = new AtomicLong();
+        private final AtomicLong totalDurationNanos = new AtomicLong();
+        private final AtomicLongArray durations = new AtomicLongArray(DURATION_BUCKETS);
+
+        Probe(String viewModelName) {
+            this.viewModelName = viewModelName;
+        }
+
+        /** Records a lookup the store answered. */
+        public void hit() {
+            hits.incrementAndGet();
+            final Listener listener = AlfredMonitor.listener;
+            if (listener != null) {
+                listener.onLookup(this, true);
+            }
+        }
+
+        /** Records a lookup which found nothing, a creation follows. */
+        public void miss() {
+            misses.incrementAndGet();
+            final Listener listener = AlfredMonitor.listener;
+            if (listener != null) {
+                listener.onLookup(this, false);
+            }
+        }
+
+        /** Records a constructor call which took the given time. */
+        public void created(long durationNanos) {
+            creations.incrementAndGet();
+            totalDurationNanos.addAndGet(durationNanos);
+            durations.incrementAndGet(getBucket(durationNanos));
+            final Listener listener = AlfredMonitor.listener;
+            if (listener != null) {
+                listener.onCreated(this, durationNanos);
+            }
+        }
+
+        public String getViewModelName() {
+            return viewModelName;
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getCreations() {
+            return creations.get();
+        }
+
+        public long getTotalDurationNanos() {
+            return totalDurationNanos.get();
+        }
+
+        /** Returns a copy of the duration histogram, see {@link #DURATION_BUCKETS}. */
+        public long[] getDurationHistogram() {
+            final long[] result = new long[DURATION_BUCKETS];
+            for (int i = 0; i < DURATION_BUCKETS; i++) {
+                result[i] = durations.get(i);
+            }
+            return result;
+        }
+
+        void reset() {
+            hits.set(0);
+            misses.set(0);
+            creations.set(0);
+            totalDurationNanos.set(0);
+            for (int i = 0; i < DURATION_BUCKETS; i++) {
+                durations.set(i, 0);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d hits, %d misses, %d creations taking %d us in total",
+                    viewModelName, getHits(), getMisses(), getCreations(), getTotalDurationNanos() / 1000);
+        }
+
+        private static int getBucket(long durationNanos) {
+            final long micros = Math.max(durationNanos, 0) / 1000;
+            return Math.min(64 - Long.numberOfLeadingZeros(micros), DURATION_BUCKETS - 1);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Base of the constructions generated for {@code getAsync()}. Instances are created on a background
+ * executor and handed back to the main thread to be stored. Requests for the same key in the same
+ * scope are coalesced, so a {@code ViewModel} is never constructed twice; later requests simply
+ * wait for the first one to finish, with the first request's arguments. Should the scope be cleared
+ * before the instance is ready, the instance is discarded and nobody gets called back. So is an
+ * instance losing out to one the store got in the meantime, the callbacks get the stored one.
+ *
+ * <p>A plain {@code get()} for the same key {@linkplain #takeOver(Object, String) takes over} a
+ * pending construction rather than running the constructor a second time.
+ */
+public abstract class AsyncConstruction<T> implements Runnable {
+
+    /** A request which was answered straight away and has nothing to cancel. */
+    public static final Cancellable COMPLETED = new Cancellable() {
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private static final Map<Object, Map<String, AsyncConstruction<?>>> PENDING = new WeakHashMap<>();
+
+    private static final int SCHEDULED = 0;
+    private static final int CONSTRUCTING = 1;
+    private static final int CONSTRUCTED = 2;
+    private static final int FAILED = 3;
+    private static final int TAKEN_OVER = 4;
+
+    private final Object scope;
+    private final String key;
+    private final List<Callback<? super T>> callbacks = new ArrayList<>();
+    private boolean detached;
+
+    // Guarded by this, unlike the rest, so a taking over get() doesn't hold up unrelated requests.
+    private int state = SCHEDULED;
+    private T constructed;
+
+    protected AsyncConstruction(Object scope, String key) {
+        this.scope = scope;
+        this.key = key;
+    }
+
+    /**
+     * Subscribes the callback to the construction pending for the candidate's scope and key, scheduling
+     * the candidate on the executor when there is none. Must be called from the main thread.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Cancellable enqueue(AsyncConstruction<T> candidate, Executor executor,
+                                          Callback<? super T> callback) {
+        final AsyncConstruction<T> construction;
+        synchronized (PENDING) {
+            Map<String, AsyncConstruction<?>> scoped = PENDING.get(candidate.scope);
+            if (scoped == null) {
+                scoped = new HashMap<>();
+                PENDING.put(candidate.scope, scoped);
+            }
+
+            final AsyncConstruction<T> pending = (AsyncConstruction<T>) scoped.get(candidate.key);
+            construction = pending != null ? pending : candidate;
+            construction.callbacks.add(callback);
+            if (pending == null) {
+                scoped.put(candidate.key, candidate);
+            }
+        }
+
+        if (construction == candidate) {
+            executor.execute(candidate);
+        }
+        return construction.cancellation(callback);
+    }
+
+    /**
+     * Takes over the construction pending for the given scope and key, if any, for a synchronous
+     * {@code get()} which found the store empty. Returns the instance should the construction have
+     * already built one, waiting for it if it is under way; the caller stores it and the construction
+     * picks it up from the store. Returns {@code null} if there is nothing to wait for, the caller
+     * then constructs the instance itself and the construction, once it gets to run, hands out what
+     * the caller stored instead. Must be called from the main thread.
+     */
+    public static Object takeOver(Object scope, String key) {
+        final AsyncConstruction<?> construction;
+        synchronized (PENDING) {
+            final Map<String, AsyncConstruction<?>> scoped = PENDING.get(scope);
+            construction = scoped != null ? scoped.get(key) : null;
+        }
+        return construction != null ? construction.takeOver() : null;
+    }
+
+    /** Creates the instance. Called on the background executor. */
+    protected abstract T construct();
+
+    /**
+     * Stores the instance, returning the one the store ends up holding. The instance is {@code null}
+     * when a synchronous {@code get()} took over, which left one in the store. Called on the main
+     * thread.
+     */
+    protected abstract T install(T instance);
+
+    /** Whether the scope got cleared since this construction was created. Called on the main thread. */
+    protected abstract boolean isScopeCleared();
+
+    /** Lets go of an instance which is never going to be stored. Called on the main thread. */
+    protected abstract void discard(T instance);
+
+    /** Runs the given task on the main thread. */
+    protected abstract void postToMainThread(Runnable task);
+
+    @Override
+    public final void run() {
+        synchronized (PENDING) {
+            // Everyone lost interest before we got to it, let a later request start over.
+            if (callbacks.isEmpty()) {
+                detach();
+                return;
+            }
+        }
+
+        final boolean takenOver;
+        synchronized (this) {
+            takenOver = state == TAKEN_OVER;
+            if (!takenOver) {
+                state = CONSTRUCTING;
+            }
+        }
+
+        if (!takenOver) {
+            final T instance;
+            try {
+                instance = construct();
+            } catch (final Throwable e) {
+                fail(e);
+                return;
+            }
+            synchronized (this) {
+                constructed = instance;
+                state = CONSTRUCTED;
+                notifyAll();
+            }
+        }
+
+        postToMainThread(new Runnable() {
+            @Override
+            public void run() {
+                complete();
+            }
+        });
+    }
+
+    private void fail(final Throwable error) {
+        synchronized (this) {
+            state = FAILED;
+            notifyAll();
+        }
+        // Detached right away, so later requests start over even if the error never gets delivered.
+        synchronized (PENDING) {
+            detach();
+        }
+        postToMainThread(new Runnable() {
+            @Override
+            public void run() {
+                dispatchError(error);
+            }
+        });
+    }
+
+    private void complete() {
+        // Whatever a synchronous get() took over is the store's already.
+        final T instance;
+        synchronized (this) {
+            instance = state == TAKEN_OVER ? null : constructed;
+        }
+
+        // Storing it now would leak it, a cleared scope never clears again.
+        if (isScopeCleared()) {
+            finish();
+            if (instance != null) {
+                discard(instance);
+            }
+            return;
+        }
+
+        final T stored;
+        try {
+            stored = install(instance);
+        } catch (RuntimeException e) {
+            dispatchError(e);
+            return;
+        }
+        // The store got one of its own in the meantime, which leaves ours to nobody.
+        if (instance != null && stored != instance) {
+            discard(instance);
+        }
+        for (Callback<? super T> callback : finish()) {
+            callback.onResult(stored);
+        }
+    }
+
+    private synchronized T takeOver() {
+        boolean interrupted = false;
+        while (state == CONSTRUCTING) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        switch (state) {
+            case CONSTRUCTED:
+                state = TAKEN_OVER;
+                return constructed;
+            case SCHEDULED:
+                state = TAKEN_OVER;
+                return null;
+            default:
+                // Failed and about to tell its callbacks, or taken over before, the caller is on its own.
+                return null;
+        }
+    }
+
+    private void dispatchError(Throwable error) {
+        for (Callback<? super T> callback : finish()) {
+            callback.onError(error);
+        }
+    }
+
+    private List<Callback<? super T>> finish() {
+        synchronized (PENDING) {
+            detach();
+            final List<Callback<? super T>> pending = new ArrayList<>(callbacks);
+            callbacks.clear();
+            return pending;
+        }
+    }
+
+    private void detach() {
+        if (detached) return;
+        detached = true;
+
+        final Map<String, AsyncConstruction<?>> scoped = PENDING.get(scope);
+        if (scoped != null && scoped.get(key) == this) {
+            scoped.remove(key);
+            if (scoped.isEmpty()) {
+                PENDING.remove(scope);
+            }
+        }
+    }
+
+    private Cancellable cancellation(final Callback<? super T> callback) {
+        return new Cancellable() {
+            @Override
+            public void cancel() {
+                synchronized (PENDING) {
+                    callbacks.remove(callback);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider;
+
+/**
+ * Base of the factories generated for {@code get()}, holding the arguments of a single
+ * construction. The factory without any only looks: it throws instead of creating, so a
+ * {@code ViewModel} already in the store costs its caller no factory and no arguments, only the
+ * {@code ViewModelProvider} wrapping the store. Tell such a miss by {@link #isMiss(RuntimeException)}.
+ */
+public abstract class GeneratedFactory {
+
+    private final Object[] args;
+    // Only a lookup ever misses, with an exception of its own so no other lookup's miss passes for it.
+    private final Miss miss;
+
+    /** Takes the constructor's arguments in order, or {@code null} for the lookup. */
+    protected GeneratedFactory(Object[] args) {
+        this.args = args;
+        this.miss = args == null ? new Miss() : null;
+    }
+
+    /** The arguments to construct with. Throws this lookup's miss if this is the lookup. */
+    protected final Object[] getArguments() {
+        if (args == null) {
+            throw miss;
+        }
+        return args;
+    }
+
+    /** The exception to throw when the store has nothing, for lookups handed their arguments some other way. */
+    protected final RuntimeException miss() {
+        return miss;
+    }
+
+    /** Whether the exception is this lookup telling the store has nothing. */
+    public final boolean isMiss(RuntimeException exception) {
+        return miss != null && exception == miss;
+    }
+
+    // Thrown over and over, so it doesn't fill in a stack trace.
+    static final class Miss extends RuntimeException {
+
+        Miss() {
+            super("Nothing is stored under the key.");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider;
+
+import java.util.ArrayDeque;
+
+/**
+ * A bounded pool of cleared instances of one {@code ViewModel} class, which its generated factory
+ * takes from before constructing a new one. Instances are handed back with {@link #recycle(Resettable)},
+ * typically from {@code onCleared()}. Safe to use from any thread.
+ */
+public final class InstancePool<T extends Resettable> {
+
+    private final String viewModelName;
+    private final int capacity;
+    private final ArrayDeque<T> instances;
+    private long hits;
+    private long misses;
+
+    public InstancePool(String viewModelName, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Pools need room for at least one instance, got " + capacity);
+        }
+        this.viewModelName = viewModelName;
+        this.capacity = capacity;
+        this.instances = new ArrayDeque<>(capacity);
+    }
+
+    /** Takes an instance out of the pool, or returns {@code null} if it is empty. */
+    public synchronized T acquire() {
+        final T instance = instances.pollFirst();
+        if (instance != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return instance;
+    }
+
+    /**
+     * Resets the given instance and puts it back into the pool, unless the pool is full already.
+     * The instance must not be used by anyone else afterwards.
+     *
+     * @return whether the instance was kept
+     */
+    public boolean recycle(T instance) {
+        synchronized (this) {
+            if (instances.size() >= capacity || instances.contains(instance)) {
+                return false;
+            }
+        }
+
+        // Outside the lock, reset() is the ViewModel's own code.
+        instance.reset();
+
+        synchronized (this) {
+            if (instances.size() >= capacity || instances.contains(instance)) {
+                return false;
+            }
+            instances.offerFirst(instance);
+            return true;
+        }
+    }
+
+    /** Lets go of every pooled instance, e.g. when the system is low on memory. */
+    public synchronized void clear() {
+        instances.clear();
+    }
+
+    public String getViewModelName() {
+        return viewModelName;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** How many instances are waiting to be reused. */
+    public synchronized int getSize() {
+        return instances.size();
+    }
+
+    /** How many creations were served from the pool. */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** How many creations found the pool empty and had to construct. */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d of %d pooled, %d hits, %d misses",
+                viewModelName, instances.size(), capacity, hits, misses);
+    }
+}
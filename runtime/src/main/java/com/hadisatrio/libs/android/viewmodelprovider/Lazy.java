@@ -0,0 +1,43 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider;
+
+/**
+ * A {@code ViewModel} which is only obtained from its store the first time {@link #get()} is called,
+ * and remembered from then on. Like the store itself, handles are meant to be used from the main
+ * thread only. Keep them in the activity or fragment they were created for, they hold on to it.
+ */
+public abstract class Lazy<T> {
+
+    private T value;
+
+    /** Returns the {@code ViewModel}, obtaining it from the store, or creating it, on the first call. */
+    public final T get() {
+        if (value == null) {
+            value = resolve();
+        }
+        return value;
+    }
+
+    /** Whether {@link #get()} has been called yet. */
+    public final boolean isResolved() {
+        return value != null;
+    }
+
+    /** Obtains the {@code ViewModel} through the generated provider. */
+    protected abstract T resolve();
+}
@@ -0,0 +1,30 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider;
+
+/**
+ * The contract of {@code ViewModel}s provided with {@code pool} set: they can be reset to serve
+ * another screen instead of being thrown away once cleared.
+ */
+public interface Resettable {
+
+    /**
+     * Drops everything tied to the screen the instance served, keeping what is worth reusing,
+     * e.g. buffers. Called as the instance goes back into its {@link InstancePool}.
+     */
+    void reset();
+}
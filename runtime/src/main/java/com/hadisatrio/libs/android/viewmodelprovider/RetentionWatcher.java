@@ -0,0 +1,163 @@
+/*
+ *    Copyright (C) 2017 Hadi Satrio
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.hadisatrio.libs.android.viewmodelprovider;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Watches the lifecycle-bound arguments {@code ViewModel}s were created with, reporting those still
+ * reachable a while after the activity or fragment they were obtained from got destroyed. Generated
+ * providers only call into this when built with {@code alfred.watch} enabled.
+ */
+public final class RetentionWatcher {
+
+    /** Told about retained arguments. Called from the watcher's background thread. */
+    public interface Listener {
+
+        void onRetained(Class<?> viewModelClass, String parameterName, Object argument);
+    }
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+    private static final Set<Reference<?>> WATCHED = new HashSet<>();
+
+    private static volatile Listener listener;
+    private static volatile long delayMillis = 5000;
+    private static Timer timer;
+
+    private RetentionWatcher() {
+    }
+
+    /** Sets where retained arguments are reported to. Nothing is checked while it's {@code null}, the default. */
+    public static void setListener(Listener listener) {
+        RetentionWatcher.listener = listener;
+    }
+
+    /** Sets how long arguments get to become unreachable after their owner is destroyed. */
+    public static void setDelayMillis(long delayMillis) {
+        RetentionWatcher.delayMillis = delayMillis;
+    }
+
+    /** Starts a watch for the arguments of a newly created {@code ViewModel}. */
+    public static Watch watch(Object viewModel) {
+        return new Watch(viewModel.getClass());
+    }
+
+    private static synchronized void schedule(final List<Argument> arguments) {
+        if (timer == null) {
+            timer = new Timer("RetentionWatcher", true);
+        }
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                check(arguments);
+            }
+        }, delayMillis);
+    }
+
+    private static void check(List<Argument> arguments) {
+        final Listener listener = RetentionWatcher.listener;
+        if (listener == null) return;
+
+        if (hasReachable(arguments)) {
+            // Give the garbage collector a chance before blaming anyone.
+            Runtime.getRuntime().gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (!hasReachable(arguments)) return;
+
+        for (Argument argument : arguments) {
+            final Object retained = argument.get();
+            if (retained != null) {
+                listener.onRetained(argument.viewModelClass, argument.parameterName, retained);
+            }
+        }
+    }
+
+    private static boolean hasReachable(List<Argument> arguments) {
+        synchronized (WATCHED) {
+            drain();
+            for (Argument argument : arguments) {
+                if (WATCHED.contains(argument)) return true;
+            }
+            return false;
+        }
+    }
+
+    // Forgets about arguments which have been collected. Callers hold the WATCHED lock.
+    private static void drain() {
+        Reference<?> collected;
+        while ((collected = QUEUE.poll()) != null) {
+            WATCHED.remove(collected);
+        }
+    }
+
+    /** The arguments of a single {@code ViewModel}. */
+    public static final class Watch {
+
+        private final Class<?> viewModelClass;
+        private final List<Argument> arguments = new ArrayList<>();
+
+        private Watch(Class<?> viewModelClass) {
+            this.viewModelClass = viewModelClass;
+        }
+
+        /** Adds an argument to the watch, {@code null}s are ignored. */
+        public Watch add(String parameterName, Object argument) {
+            if (argument == null) return this;
+
+            final Argument reference = new Argument(viewModelClass, parameterName, argument);
+            synchronized (WATCHED) {
+                drain();
+                WATCHED.add(reference);
+            }
+            arguments.add(reference);
+            return this;
+        }
+
+        /** To be called once the activity or fragment the {@code ViewModel} was obtained from is destroyed. */
+        public void ownerDestroyed() {
+            if (!arguments.isEmpty()) {
+                schedule(new ArrayList<>(arguments));
+            }
+        }
+    }
+
+    private static final class Argument extends WeakReference<Object> {
+
+        private final Class<?> viewModelClass;
+        private final String parameterName;
+
+        Argument(Class<?> viewModelClass, String parameterName, Object referent) {
+            super(referent, QUEUE);
+            this.viewModelClass = viewModelClass;
+            this.parameterName = parameterName;
+        }
+    }
+}